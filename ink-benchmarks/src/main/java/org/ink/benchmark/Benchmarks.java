@@ -0,0 +1,36 @@
+package org.ink.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * the main class of benchmarks.jar, the same options as the jmh main,
+ * with the gc profiler always on, so {@code gc.alloc.rate.norm}, the bytes of every operation,
+ * is in every result
+ * <pre>
+ * java -jar target/benchmarks.jar                      all the benchmarks
+ * java -jar target/benchmarks.jar RouteFinder -rf json one of them, the result in jmh-result.json
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListProfilers()
+                || options.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,72 @@
+package org.ink.benchmark;
+
+import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import org.ink.web.http.Cookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the Set-Cookie of {@link Cookie#toString()} and the Cookie header of {@link Cookie#decode(String)},
+ * the encoder and the decoder of netty are the baseline
+ * <pre>
+ * java -jar target/benchmarks.jar CookieBenchmark
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookieBenchmark {
+
+    //like a browser with a session and some cookies of the page
+    private static final String HEADER = "SESSIONID=0a3F9C2B7D41E6A85C0B9D3E2F1A4C7B6E; theme=dark; "
+            + "lang=zh-CN; _ga=GA1.2.1234567890.1500000000; INK_TOKEN=eyJhbGciOiJIUzI1NiJ9.e30.c2lnbmF0dXJl";
+
+    private Cookie cookie;
+
+    private io.netty.handler.codec.http.cookie.Cookie nettyCookie;
+
+    @Setup
+    public void setup() {
+        cookie = new Cookie("SESSIONID", "0a3F9C2B7D41E6A85C0B9D3E2F1A4C7B6E");
+        nettyCookie = ServerCookieDecoder.STRICT.decode(cookie.toString()).iterator().next();
+        nettyCookie.setMaxAge(cookie.maxAge());
+        nettyCookie.setHttpOnly(true);
+    }
+
+    @Benchmark
+    public String encode() {
+        return cookie.toString();
+    }
+
+    @Benchmark
+    public String nettyEncode() {
+        return ServerCookieEncoder.STRICT.encode(nettyCookie);
+    }
+
+    @Benchmark
+    public Set<Cookie> decode() {
+        return Cookie.decode(HEADER);
+    }
+
+    @Benchmark
+    public Set<io.netty.handler.codec.http.cookie.Cookie> nettyDecode() {
+        return ServerCookieDecoder.STRICT.decode(HEADER);
+    }
+}
@@ -0,0 +1,61 @@
+package org.ink.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpVersion;
+import org.ink.web.http.Cookie;
+import org.ink.web.http.HttpHeader;
+import org.ink.web.http.Response;
+
+import java.io.IOException;
+import java.util.stream.Collectors;
+
+/**
+ * Response.buildDefaultFullHttpResponse before the json was written into the buffer,
+ * kept here as the baseline of {@link ResponseEncodingBenchmark}
+ */
+final class LegacyResponseEncoder {
+
+    static HttpResponse encode(Response r) throws IOException {
+        DefaultHttpResponse fullHttpResponse;
+
+        int length = 0;
+        if (r.body() == null && r.file() == null) {
+            fullHttpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, r.responseStatus());
+        } else {
+            if (r.body() != null) {
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, r.responseStatus(),
+                        Unpooled.copiedBuffer(JSON.toJSONString(r.body()).getBytes()));
+                length = response.content().readableBytes();
+                fullHttpResponse = response;
+            } else {
+                fullHttpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, r.responseStatus());
+            }
+        }
+
+        for (String s : r.headers().keySet()) {
+            fullHttpResponse.headers().add(s, r.headers().get(s));
+        }
+
+        if (!fullHttpResponse.headers().contains("Content-type")) {
+            if (r.body() instanceof String) {
+                fullHttpResponse.headers().set(HttpHeader.CONTENT_TYPE, "text/plain");
+            } else {
+                fullHttpResponse.headers().set(HttpHeader.CONTENT_TYPE, "application/json;charset=utf-8");
+            }
+        }
+
+        if (r.cookies() != null) {
+            fullHttpResponse.headers().add(HttpHeader.SET_COOKIE, r.cookies().stream()
+                    .map(Cookie::toString)
+                    .collect(Collectors.toList()));
+        }
+        fullHttpResponse.headers().set(HttpHeader.CONNECTION, "keep-alive");
+        fullHttpResponse.headers().set(HttpHeader.CONTENT_LENGTH, length + (r.file() == null ? 0 : r.file().length()));
+        fullHttpResponse.headers().set(HttpHeader.SERVER, "Ink");
+        return fullHttpResponse;
+    }
+}
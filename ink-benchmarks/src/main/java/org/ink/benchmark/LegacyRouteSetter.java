@@ -0,0 +1,220 @@
+package org.ink.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.multipart.*;
+import io.netty.util.CharsetUtil;
+import org.ink.web.WebContext;
+import org.ink.web.annotation.*;
+import org.ink.web.route.Route;
+import org.ink.web.view.Model;
+
+import java.io.*;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the reflective RouteSetter before the binders were compiled,
+ * kept here as the baseline of {@link RouteSetterBenchmark}
+ *
+ * the security check is removed, the rest is the same
+ */
+final class LegacyRouteSetter {
+
+    static void routeSetter(Route route, Object[] args, FullHttpRequest fullHttpRequest) throws Exception {
+        String path = fullHttpRequest.uri();
+        HttpMethod method = fullHttpRequest.method();
+
+
+        //设置@PathVariable
+        routePathVariableSetter(path, route, args);
+
+        if (route.httpMethod().equals(HttpMethod.GET)) {
+            //设置GET @RequestParam
+            GETParamsSetter(path, route, args);
+        } else if (route.httpMethod().equals(HttpMethod.POST)) {
+            //设置POST @RequestParam
+            POSTParamsSetter(fullHttpRequest, route, args);
+        }
+
+        //设置@RequestJson
+        if ("application/json".equals(fullHttpRequest.headers().get("content-Type"))) {
+            routeRequestJsonSetter(fullHttpRequest.content().copy().toString(CharsetUtil.UTF_8), route, args);
+        }
+
+        //设置@FILE
+        if (fullHttpRequest.headers().get("content-Type") != null && fullHttpRequest.headers().get("content-Type").startsWith("multipart/form-data")) {
+            fileSetter(fullHttpRequest, route, args);
+        }
+
+        //设置model
+        modelSetter(fullHttpRequest, route, args);
+
+    }
+
+    //处理Model参数
+    public static void modelSetter(FullHttpRequest fullHttpRequest, Route route, Object[] args) {
+        Method method = route.getMethod();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            //得到参数的类
+            Class<?> class1 = parameters[i].getType();
+            if (class1.equals(Model.class)) {
+                Model model = new Model();
+                WebContext.currentResponse().setModel(model);
+                args[i] = model;
+            }
+        }
+    }
+
+    //处理@RequestJson参数
+    public static void routeRequestJsonSetter(String json, Route route, Object[] args) {
+        Method method = route.getMethod();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            Annotation[] annotations = parameters[i].getAnnotations();
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof RequestJson) {
+                    //得到参数的类
+                    Class<?> class1 = parameters[i].getType();
+                    Object object = JSON.parseObject(json, class1);
+                    args[i] = object;
+                }
+            }
+        }
+    }
+
+    public static void fileSetter(FullHttpRequest request, Route route, Object[] args) {
+        try {
+            HttpPostMultipartRequestDecoder decoder = new HttpPostMultipartRequestDecoder(request);
+            Map<String, File> map = new HashMap<>();
+
+            for (InterfaceHttpData httpData : decoder.getBodyHttpDatas()) {
+                if ("FileUpload".equals(httpData.getHttpDataType().name())) {
+                    FileUpload fileUpload = (FileUpload) httpData;
+                    map.put(httpData.getName(), fileUpload.getFile());
+                }
+            }
+            Method method = route.getMethod();
+            Parameter[] parameters = method.getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                Annotation[] annotations = parameters[i].getAnnotations();
+                for (Annotation annotation : annotations) {
+                    if (annotation instanceof FILE) {
+                        //得到参数的类
+                        if (map.containsKey(parameters[i].getName())) {
+                            //根据名字set
+                            args[i] = map.get(parameters[i].getName());
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //处理@PathVariable参数
+    public static void routePathVariableSetter(String path, Route route, Object[] args) {
+        Method method = route.getMethod();
+        Annotation annotation = method.getAnnotations()[0];
+        String uri = "";
+
+
+        if (annotation instanceof GET) {
+            uri = ((GET) annotation).value();
+        } else if (annotation instanceof POST) {
+            uri = ((POST) annotation).value();
+        } else if (annotation instanceof PUT) {
+            uri = ((PUT) annotation).value();
+        } else if (annotation instanceof DELETE) {
+            uri = ((DELETE) annotation).value();
+        }
+
+        String[] requestPaths = path.split("/");
+        String[] originPath = uri.split("/");
+
+        Parameter[] parameters = method.getParameters();
+
+        for (int i = 0; i < requestPaths.length && i < originPath.length; i++) {
+            if (!requestPaths[i].equals(originPath[i])) {
+                for (int j = 0; j < parameters.length; j++) {
+                    if (parameters[j].getName().equals(originPath[i].substring(1, originPath[i].length() - 1))) {
+                        //根据@PathVariable的类型进行转换
+                        if (parameters[j].getType().equals(Integer.class)) {
+                            args[j] = Integer.valueOf(requestPaths[i]);
+                        } else if (parameters[j].getType().equals(Long.class)) {
+                            args[j] = Long.valueOf(requestPaths[i]);
+                        } else if (parameters[j].getType().equals(String.class)) {
+                            args[j] = requestPaths[i];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    //处理@RequestParam参数
+    public static void GETParamsSetter(String path, Route route, Object[] args) {
+
+        QueryStringDecoder decoder = new QueryStringDecoder(path);
+        Map<String, List<String>> map = decoder.parameters();
+        Parameter[] parameters = route.getMethod().getParameters();
+
+        for (int i = 0; i < parameters.length; i++) {
+            Annotation[] annotations = parameters[i].getAnnotations();
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof RequestParam) {
+                    List<String> list = map.get(parameters[i].getName());
+                    if (list == null || list.size() == 0) {
+                        args[i] = null;
+                    } else {
+                        args[i] = list.get(0);
+                    }
+                }
+            }
+        }
+
+    }
+
+    //处理@POSTParam参数
+    public static void POSTParamsSetter(FullHttpRequest request, Route route, Object[] args) {
+        Parameter[] parameters = route.getMethod().getParameters();
+
+
+        HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(request);
+        List<InterfaceHttpData> interfaceHttpData = decoder.getBodyHttpDatas();
+
+        interfaceHttpData.stream()
+                .forEach(interfaceHttpData1 -> {
+                    //if is Attribute
+                    if (interfaceHttpData1.getHttpDataType().equals(InterfaceHttpData.HttpDataType.Attribute)) {
+
+                        Attribute attribute = (Attribute) interfaceHttpData1;
+
+                        for (int i = 0; i < parameters.length; i++) {
+                            Annotation[] annotations = parameters[i].getAnnotations();
+                            for (Annotation annotation : annotations) {
+                                if (annotation instanceof RequestParam) {
+                                    String parameterName = parameters[i].getName();
+                                    if (parameterName.equals(interfaceHttpData1.getName())) {
+                                        try {
+                                            args[i] = attribute.getValue();
+                                        } catch (IOException e) {
+                                            e.printStackTrace();
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                });
+    }
+
+}
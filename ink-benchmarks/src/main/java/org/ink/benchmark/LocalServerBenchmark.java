@@ -0,0 +1,108 @@
+package org.ink.benchmark;
+
+import io.netty.handler.codec.http.FullHttpResponse;
+import org.ink.ioc.bean.BeanDefinition;
+import org.ink.server.InkServer;
+import org.ink.server.LocalClient;
+import org.ink.web.annotation.GET;
+import org.ink.web.annotation.RequestParam;
+import org.ink.web.route.RouteRegister;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the whole server in this jvm, the codec, the aggregator, the routes and the handler,
+ * over the local transport, so the time of the kernel and the sockets is not in it
+ *
+ * <ul>
+ *     <li>roundTrip  one request and wait for the response</li>
+ *     <li>pipelined  16 requests on the wire and wait for all the responses, the time of one request</li>
+ * </ul>
+ * <pre>
+ * java -jar target/benchmarks.jar LocalServerBenchmark
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalServerBenchmark {
+
+    private static final int PIPELINE = 16;
+
+    public static class BenchController {
+
+        @GET("/hello")
+        public Object hello(@RequestParam String name) {
+            return Collections.singletonMap("message", "hello " + name);
+        }
+    }
+
+    private InkServer server;
+    private LocalClient client;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new InkServer("bench");
+        server.setList(RouteRegister.registerRoute(Collections.singletonMap("benchController",
+                new BeanDefinition(BenchController.class, new BenchController()))));
+        server.bind();
+        client = new LocalClient("bench");
+        FullHttpResponse response = client.get("/hello?name=zhuyichen").join();
+        int status = response.status().code();
+        response.release();
+        if (status != 200) {
+            throw new IllegalStateException("the route answered " + status);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int roundTrip() {
+        FullHttpResponse response = client.get("/hello?name=zhuyichen").join();
+        int length = response.content().readableBytes();
+        response.release();
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public int pipelined() {
+        List<CompletableFuture<FullHttpResponse>> futures = new ArrayList<>(PIPELINE);
+        for (int i = 0; i < PIPELINE; i++) {
+            futures.add(client.get("/hello?name=zhuyichen"));
+        }
+        int length = 0;
+        for (CompletableFuture<FullHttpResponse> future : futures) {
+            FullHttpResponse response = future.join();
+            length += response.content().readableBytes();
+            response.release();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,107 @@
+package org.ink.benchmark;
+
+import io.netty.handler.codec.http.HttpMethod;
+import org.ink.aop.ProxyManager;
+import org.ink.aop.annotation.After;
+import org.ink.aop.annotation.Before;
+import org.ink.aop.annotation.Proxy;
+import org.ink.ioc.bean.BeanDefinition;
+import org.ink.web.annotation.RequestParam;
+import org.ink.web.http.Response;
+import org.ink.web.route.Invocation;
+import org.ink.web.route.Route;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link org.ink.aop.ProxyChain#doChain} of the before and the after chains,
+ * the chains are built by {@link ProxyManager#registerProxy} like the server does
+ *
+ * the before chain has one method with the response, one with an arg of the route;
+ * the after chain has one method with the response
+ * <pre>
+ * java -jar target/benchmarks.jar ProxyChainBenchmark
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyChainBenchmark {
+
+    public static class BenchController {
+
+        public String index(@RequestParam String name) {
+            return name;
+        }
+    }
+
+    @Proxy
+    public static class BenchAop {
+
+        @Before("/index")
+        public boolean check(Response response) {
+            return response != null;
+        }
+
+        @Before(value = "/index", args = "name")
+        public boolean name(String name) {
+            return name != null;
+        }
+
+        @After("/index")
+        public void after(Response response) {
+            response.header("X-Bench", "1");
+        }
+    }
+
+    private Route route;
+    private Invocation invocation;
+
+    @Setup
+    public void setup() throws Exception {
+        route = new Route(new BenchController(), BenchController.class.getMethod("index", String.class),
+                HttpMethod.GET, "/index");
+        Map<String, BeanDefinition> beans = new HashMap<>();
+        beans.put("benchAop", new BeanDefinition(BenchAop.class, new BenchAop()));
+        ProxyManager.registerProxy(beans, Collections.singletonList(route));
+        if (route.beforeProxyChain().size() != 2 || route.afterProxyChain().size() != 1) {
+            throw new IllegalStateException("the chains are not built");
+        }
+        invocation = Invocation.newInstance(route, null, new Response());
+        invocation.args()[0] = "zhuyichen";
+    }
+
+    @TearDown
+    public void tearDown() {
+        invocation.recycle();
+    }
+
+    @Benchmark
+    public boolean before() {
+        return route.beforeProxyChain().doChain(invocation);
+    }
+
+    @Benchmark
+    public boolean after() {
+        return route.afterProxyChain().doChain(invocation);
+    }
+}
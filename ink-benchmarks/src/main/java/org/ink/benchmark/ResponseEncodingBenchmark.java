@@ -0,0 +1,123 @@
+package org.ink.benchmark;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.ReferenceCountUtil;
+import org.ink.web.http.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the json response body through String and byte[] in {@link LegacyResponseEncoder},
+ * against the json written into a pooled direct buffer by {@link Response#buildDefaultFullHttpResponse(ByteBufAllocator)},
+ * and the String body and the head of the file body of the same method
+ *
+ * the allocation per response is the {@code gc.alloc.rate.norm} of the gc profiler
+ * <pre>
+ * java -jar target/benchmarks.jar ResponseEncodingBenchmark -prof gc
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+
+    /**
+     * the count of the items in the body
+     */
+    @Param({"1", "100"})
+    public int items;
+
+    private Response response;
+
+    private Response stringResponse;
+
+    private Response fileResponse;
+
+    private File file;
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Map<String, Object>> body = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", i);
+            item.put("randomNumber", i * 31 % 10000);
+            item.put("message", "Hello, World!");
+            body.add(item);
+        }
+        response = Response.ok().body(body).build();
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < items; i++) {
+            text.append("Hello, World! ");
+        }
+        stringResponse = Response.ok().body(text.toString()).build();
+
+        file = File.createTempFile("ink-bench", ".bin");
+        Files.write(file.toPath(), new byte[64 * 1024]);
+        fileResponse = Response.ok().file(file, file.getName()).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileResponse.file().close();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public void legacyJson(Blackhole bh) throws Exception {
+        HttpResponse httpResponse = LegacyResponseEncoder.encode(response);
+        bh.consume(httpResponse);
+        ReferenceCountUtil.release(httpResponse);
+    }
+
+    @Benchmark
+    public void pooledJson(Blackhole bh) throws Exception {
+        HttpResponse httpResponse = response.buildDefaultFullHttpResponse(alloc);
+        bh.consume(httpResponse);
+        ReferenceCountUtil.release(httpResponse);
+    }
+
+    @Benchmark
+    public void pooledString(Blackhole bh) throws Exception {
+        HttpResponse httpResponse = stringResponse.buildDefaultFullHttpResponse(alloc);
+        bh.consume(httpResponse);
+        ReferenceCountUtil.release(httpResponse);
+    }
+
+    @Benchmark
+    public void fileHead(Blackhole bh) throws Exception {
+        HttpResponse httpResponse = fileResponse.buildDefaultFullHttpResponse(alloc);
+        bh.consume(httpResponse);
+        ReferenceCountUtil.release(httpResponse);
+    }
+}
@@ -0,0 +1,97 @@
+package org.ink.benchmark;
+
+import io.netty.handler.codec.http.HttpMethod;
+import org.ink.web.annotation.PathVariable;
+import org.ink.web.route.Route;
+import org.ink.web.route.RouteFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RouteFinder#findRoute(HttpMethod, String)} with 10, 100 and 1000 routes
+ *
+ * the routes are in groups of 10, one of 10 has a path variable.
+ * the tries of RouteFinder are static, so every count of the routes needs its own fork
+ * <pre>
+ * java -jar target/benchmarks.jar RouteFinderBenchmark
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteFinderBenchmark {
+
+    public static class BenchController {
+
+        public String list() {
+            return "";
+        }
+
+        public String item(@PathVariable Long id) {
+            return "";
+        }
+    }
+
+    @Param({"10", "100", "1000"})
+    public int routes;
+
+    private String staticPath;
+    private String variablePath;
+    private String missingPath;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchController controller = new BenchController();
+        Method list = BenchController.class.getMethod("list");
+        Method item = BenchController.class.getMethod("item", Long.class);
+        for (int i = 0; i < routes; i++) {
+            String base = "/api/v1/group" + i / 10 + "/resource" + i;
+            if (i % 10 == 9) {
+                RouteFinder.addRouter(new Route(controller, item, HttpMethod.GET, base + "/{id}"));
+            } else {
+                RouteFinder.addRouter(new Route(controller, list, HttpMethod.GET, base));
+            }
+        }
+        //the last ones, the deepest in the tries
+        int last = routes - 1;
+        staticPath = "/api/v1/group" + (last - 1) / 10 + "/resource" + (last - 1);
+        variablePath = "/api/v1/group" + last / 10 + "/resource" + last + "/42";
+        missingPath = "/api/v1/group" + last / 10 + "/missing";
+        if (RouteFinder.findRoute(HttpMethod.GET, staticPath) == null
+                || RouteFinder.findRoute(HttpMethod.GET, variablePath) == null) {
+            throw new IllegalStateException("the routes are not found");
+        }
+    }
+
+    @Benchmark
+    public Route staticRoute() {
+        return RouteFinder.findRoute(HttpMethod.GET, staticPath);
+    }
+
+    @Benchmark
+    public Route pathVariable() {
+        return RouteFinder.findRoute(HttpMethod.GET, variablePath);
+    }
+
+    @Benchmark
+    public Route notFound() {
+        return RouteFinder.findRoute(HttpMethod.GET, missingPath);
+    }
+}
@@ -0,0 +1,233 @@
+package org.ink.benchmark;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.multipart.DiskFileUpload;
+import io.netty.util.CharsetUtil;
+import org.ink.web.WebContext;
+import org.ink.web.annotation.FILE;
+import org.ink.web.annotation.GET;
+import org.ink.web.annotation.POST;
+import org.ink.web.annotation.PathVariable;
+import org.ink.web.annotation.RequestJson;
+import org.ink.web.annotation.RequestParam;
+import org.ink.web.http.Response;
+import org.ink.web.route.Invocation;
+import org.ink.web.route.ParameterBinders;
+import org.ink.web.route.Route;
+import org.ink.web.route.RouteSetter;
+import org.ink.web.view.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RouteSetter#routeSetter} for every kind of the parameters, one route of one parameter each
+ *
+ * <ul>
+ *     <li>path           {@code @PathVariable Long}</li>
+ *     <li>query          {@code @RequestParam} of GET</li>
+ *     <li>form           {@code @RequestParam} of POST, the urlencoded body</li>
+ *     <li>json           {@code @RequestJson}</li>
+ *     <li>model          {@code Model}</li>
+ *     <li>stream         {@code InputStream} of the body</li>
+ *     <li>file           {@code @FILE} of the multipart body, the temp file is deleted by {@code invocation.recycle()}</li>
+ *     <li>profile        path, query and model together</li>
+ *     <li>legacyProfile  the same route by the reflective {@link LegacyRouteSetter}</li>
+ *     <li>legacyJson     json by the reflective {@link LegacyRouteSetter}</li>
+ * </ul>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar RouteSetterBenchmark -prof gc
+ * java -jar target/benchmarks.jar RouteSetterBenchmark -p kind=profile,legacyProfile
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteSetterBenchmark {
+
+    private static final String BOUNDARY = "bench-boundary";
+
+    public static class BenchController {
+
+        @GET("/user/{id}")
+        public Object path(@PathVariable Long id) {
+            return id;
+        }
+
+        @GET("/user")
+        public Object query(@RequestParam String name) {
+            return name;
+        }
+
+        @POST("/user")
+        public Object form(@RequestParam String name) {
+            return name;
+        }
+
+        @POST("/user/json")
+        public Object json(@RequestJson BenchUser user) {
+            return user;
+        }
+
+        @GET("/page")
+        public Object model(Model model) {
+            return model;
+        }
+
+        @POST("/upload")
+        public Object stream(InputStream in) {
+            return in;
+        }
+
+        @POST("/upload/file")
+        public Object file(@FILE File file) {
+            return file;
+        }
+
+        @GET("/user/{id}/profile")
+        public Object profile(@PathVariable Long id, @RequestParam String name,
+                              @RequestParam String password, Model model) {
+            return name;
+        }
+    }
+
+    public static class BenchUser {
+        private String name;
+        private int age;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+    }
+
+    @Param({"path", "query", "form", "json", "model", "stream", "file", "profile", "legacyProfile", "legacyJson"})
+    public String kind;
+
+    private Route route;
+    private FullHttpRequest request;
+    private Response response;
+    private boolean legacy;
+
+    @Setup
+    public void setup() throws Exception {
+        switch (kind) {
+            case "path":
+                route = route("path", HttpMethod.GET, "/user/{id}", Long.class);
+                request = request(HttpMethod.GET, "/user/42", null, null);
+                break;
+            case "query":
+                route = route("query", HttpMethod.GET, "/user", String.class);
+                request = request(HttpMethod.GET, "/user?name=zhuyichen", null, null);
+                break;
+            case "form":
+                route = route("form", HttpMethod.POST, "/user", String.class);
+                request = request(HttpMethod.POST, "/user", "application/x-www-form-urlencoded", "name=zhuyichen&age=20");
+                break;
+            case "json":
+            case "legacyJson":
+                route = route("json", HttpMethod.POST, "/user/json", BenchUser.class);
+                request = request(HttpMethod.POST, "/user/json", "application/json", "{\"name\":\"zhuyichen\",\"age\":20}");
+                break;
+            case "model":
+                route = route("model", HttpMethod.GET, "/page", Model.class);
+                request = request(HttpMethod.GET, "/page", null, null);
+                break;
+            case "stream":
+                route = route("stream", HttpMethod.POST, "/upload", InputStream.class);
+                request = request(HttpMethod.POST, "/upload", "application/octet-stream", "0123456789abcdef");
+                break;
+            case "file":
+                //every upload would be kept in the set of File.deleteOnExit until the benchmark ends
+                DiskFileUpload.deleteOnExitTemporaryFile = false;
+                route = route("file", HttpMethod.POST, "/upload/file", File.class);
+                request = request(HttpMethod.POST, "/upload/file", "multipart/form-data; boundary=" + BOUNDARY,
+                        "--" + BOUNDARY + "\r\n"
+                                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n"
+                                + "Content-Type: text/plain\r\n"
+                                + "\r\n"
+                                + "0123456789abcdef0123456789abcdef\r\n"
+                                + "--" + BOUNDARY + "--\r\n");
+                break;
+            case "profile":
+            case "legacyProfile":
+                route = route("profile", HttpMethod.GET, "/user/{id}/profile",
+                        Long.class, String.class, String.class, Model.class);
+                request = request(HttpMethod.GET, "/user/42/profile?name=zhuyichen&password=hello", null, null);
+                break;
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+        legacy = kind.startsWith("legacy");
+        response = new Response();
+        WebContext.setCurrentResponse(response);
+    }
+
+    private static Route route(String name, HttpMethod httpMethod, String path, Class<?>... types) throws Exception {
+        Method method = BenchController.class.getMethod(name, types);
+        Route route = new Route(new BenchController(), method, httpMethod, path);
+        route.setBinders(ParameterBinders.compile(route));
+        return route;
+    }
+
+    private static FullHttpRequest request(HttpMethod method, String uri, String contentType, String body) {
+        FullHttpRequest request = body == null
+                ? new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri)
+                : new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri, Unpooled.copiedBuffer(body, CharsetUtil.UTF_8));
+        if (contentType != null) {
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        }
+        return request;
+    }
+
+    @Benchmark
+    public void bind(Blackhole bh) throws Exception {
+        if (legacy) {
+            Object[] args = new Object[route.getMethod().getParameterCount()];
+            LegacyRouteSetter.routeSetter(route, args, request);
+            bh.consume(args);
+            return;
+        }
+        Invocation invocation = Invocation.newInstance(route, null, response);
+        RouteSetter.routeSetter(invocation, request);
+        bh.consume(invocation.args());
+        //the streams are closed and the upload files are deleted
+        invocation.recycle();
+    }
+}
@@ -0,0 +1,50 @@
+package org.ink.benchmark;
+
+import org.ink.web.http.HttpSession;
+import org.ink.web.http.SessionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a new session by {@link SessionManager#createSession}, with one thread and with 4 threads
+ * taking the SecureRandoms of the ids from the same queue.
+ * the session is removed at once, so the shards stay small and nothing is evicted
+ * <pre>
+ * java -jar target/benchmarks.jar SessionIdBenchmark
+ * </pre>
+ *
+ * @author zhuyichen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionIdBenchmark {
+
+    @Benchmark
+    public String create() {
+        HttpSession session = SessionManager.createSession(null);
+        SessionManager.remove(session.sessionId());
+        return session.sessionId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String createContended() {
+        HttpSession session = SessionManager.createSession(null);
+        SessionManager.remove(session.sessionId());
+        return session.sessionId();
+    }
+}
@@ -0,0 +1,244 @@
+package org.ink.benchmark.load;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * one connection of the {@link LoadGenerator}, all the methods run in its event loop
+ *
+ * the responses of http/1.1 come back in the order of the requests,
+ * so the start times of the requests on the wire are a ring of {@code pipeline} slots.
+ * in the open loop the k-th request is planned at {@code start + k * interval},
+ * the ones planned but not written yet are {@code sent} to {@code planned}
+ *
+ * if keep-alive is off, the channel is closed after every response and a new one is opened,
+ * the state is here, not in the channel, so the plan goes on over the channels
+ *
+ * @author zhuyichen
+ */
+final class Connection {
+
+    private final LoadGenerator generator;
+    private final EventLoop loop;
+    private final long start;
+    private final double interval;
+
+    //the planned (open loop) or the written (closed loop) times of the requests on the wire
+    private final long[] starts;
+    //the written times of the requests on the wire
+    private final long[] written;
+    private int head;
+    private int inFlight;
+
+    //open loop: the requests planned until now, and the ones written
+    private long planned;
+    private long sent;
+
+    private Channel channel;
+
+    Connection(LoadGenerator generator, EventLoop loop, long start, double interval) {
+        this.generator = generator;
+        this.loop = loop;
+        this.start = start;
+        this.interval = interval;
+        this.starts = new long[generator.pipeline];
+        this.written = new long[generator.pipeline];
+    }
+
+    private boolean openLoop() {
+        return interval > 0;
+    }
+
+    void connect() {
+        if (generator.stopped) {
+            return;
+        }
+        generator.bootstrap(loop)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpClientCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(16 * 1024 * 1024));
+                        ch.pipeline().addLast(new Handler());
+                    }
+                })
+                .connect(generator.address())
+                .addListener((ChannelFuture future) -> {
+                    if (!future.isSuccess()) {
+                        //the requests on the wire are lost with the channel
+                        fail();
+                        loop.schedule(this::connect, 100, TimeUnit.MILLISECONDS);
+                    }
+                });
+    }
+
+    /**
+     * close the channel, done when it is closed
+     */
+    Future<?> close() {
+        Promise<Void> done = loop.newPromise();
+        loop.execute(() -> {
+            if (channel == null) {
+                done.setSuccess(null);
+            } else {
+                channel.close().addListener(future -> done.setSuccess(null));
+            }
+        });
+        return done;
+    }
+
+    private void active(Channel channel) {
+        this.channel = channel;
+        if (openLoop()) {
+            if (planned == 0) {
+                tick();
+            } else {
+                sendPlanned();
+            }
+        } else {
+            while (inFlight < starts.length) {
+                long now = System.nanoTime();
+                write(now, now);
+            }
+            channel.flush();
+        }
+    }
+
+    /**
+     * the next request of the plan is due, or the open loop starts
+     */
+    private void tick() {
+        if (generator.stopped) {
+            return;
+        }
+        planned = Math.max(planned, (long) ((System.nanoTime() - start) / interval) + 1);
+        sendPlanned();
+        long next = start + (long) (interval * planned) - System.nanoTime();
+        loop.schedule(this::tick, Math.max(0, next), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * write the planned requests as far as the pipeline takes them
+     */
+    private void sendPlanned() {
+        if (channel == null || !channel.isActive()) {
+            return;
+        }
+        boolean flush = false;
+        while (sent < planned && inFlight < starts.length) {
+            write(start + (long) (interval * sent), System.nanoTime());
+            sent++;
+            flush = true;
+        }
+        if (flush) {
+            channel.flush();
+        }
+    }
+
+    private void write(long startTime, long writeTime) {
+        int tail = (head + inFlight) % starts.length;
+        starts[tail] = startTime;
+        written[tail] = writeTime;
+        inFlight++;
+        channel.write(request());
+    }
+
+    private FullHttpRequest request() {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, generator.target());
+        request.headers().set(HttpHeaderNames.HOST, generator.local() ? "localhost" : generator.uri.getAuthority());
+        if (!generator.keepAlive) {
+            request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        }
+        return request;
+    }
+
+    private void response(FullHttpResponse response) {
+        if (inFlight == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long startTime = starts[head];
+        long writeTime = written[head];
+        head = (head + 1) % starts.length;
+        inFlight--;
+        if (generator.recording) {
+            generator.latency.record((now - startTime) / 1000);
+            generator.service.record((now - writeTime) / 1000);
+            if (response.status().code() >= 400) {
+                generator.errors.increment();
+            }
+        }
+        if (generator.stopped) {
+            return;
+        }
+        if (!generator.keepAlive) {
+            //the next request goes on the next channel
+            channel.close();
+        } else if (openLoop()) {
+            sendPlanned();
+        } else {
+            write(now, now);
+            channel.flush();
+        }
+    }
+
+    private void inactive() {
+        channel = null;
+        if (inFlight > 0) {
+            fail();
+        }
+        if (!generator.stopped) {
+            connect();
+        }
+    }
+
+    private void fail() {
+        if (generator.recording) {
+            generator.errors.add(inFlight);
+        }
+        head = 0;
+        inFlight = 0;
+    }
+
+    private final class Handler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            active(ctx.channel());
+            super.channelActive(ctx);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+            response(msg);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            inactive();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
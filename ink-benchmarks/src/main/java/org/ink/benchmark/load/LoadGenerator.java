@@ -0,0 +1,367 @@
+package org.ink.benchmark.load;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.Future;
+import org.ink.web.metrics.LatencyHistogram;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * an http load generator on netty
+ *
+ * <ul>
+ *     <li>closed loop, without {@code --rate}: every connection keeps {@code --pipeline} requests
+ *     on the wire and sends the next one when a response comes back.
+ *     the latency is from the request written to the response read</li>
+ *     <li>open loop, with {@code --rate}: the requests are planned at the fixed rate from the start,
+ *     the latency is from the planned time, not from the time it is written.
+ *     a slow response delays the requests behind it, and that delay is counted,
+ *     which a closed loop like wrk leaves out (the coordinated omission).
+ *     the time from the written request is kept as the service time</li>
+ * </ul>
+ *
+ * the target is {@code http://host:port/path} over tcp, or {@code local://name/path}
+ * over the LocalChannel of netty to a server in the same jvm, started by {@code --main}
+ * <pre>
+ * java -cp target/benchmarks.jar org.ink.benchmark.load.LoadGenerator \
+ *     --url http://127.0.0.1:8080/json --connections 64 --duration 30 --warmup 5
+ * java -cp target/benchmarks.jar org.ink.benchmark.load.LoadGenerator \
+ *     --url http://127.0.0.1:8080/db --connections 16 --rate 5000
+ * java -cp target/benchmarks.jar:../ink-examples/techempower/target/classes:... org.ink.benchmark.load.LoadGenerator \
+ *     --url local://ink/json --main org.ink.examples.techempower.Main --args local:ink
+ * </pre>
+ *
+ * <ul>
+ *     <li>--url          the url of the requests</li>
+ *     <li>--connections  the count of the connections, default is 16</li>
+ *     <li>--threads      the count of the event loops, default is the count of the cores</li>
+ *     <li>--duration     seconds to measure, default is 10</li>
+ *     <li>--warmup       seconds before the measurement, not recorded, default is 3</li>
+ *     <li>--rate         the requests per second of all the connections, the open loop</li>
+ *     <li>--pipeline     the requests on the wire of one connection, default is 1</li>
+ *     <li>--keepalive    false to close the connection after every response, default is true</li>
+ *     <li>--main         the main class of the server to start in this jvm, with {@code --args}</li>
+ *     <li>--name, --csv  append one line of the result to the csv file</li>
+ * </ul>
+ *
+ * @author zhuyichen
+ * @see Connection
+ */
+public final class LoadGenerator {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    final URI uri;
+    final int connections;
+    final int threads;
+    final long duration;
+    final long warmup;
+    //requests per second, 0 for the closed loop
+    final double rate;
+    final int pipeline;
+    final boolean keepAlive;
+
+    volatile boolean recording;
+    volatile boolean stopped;
+
+    //from the planned time in the open loop, from the written time in the closed loop
+    final LatencyHistogram latency = new LatencyHistogram();
+    //from the written time
+    final LatencyHistogram service = new LatencyHistogram();
+    final LongAdder errors = new LongAdder();
+
+    LoadGenerator(URI uri, int connections, int threads, long duration, long warmup,
+                  double rate, int pipeline, boolean keepAlive) {
+        this.uri = uri;
+        this.connections = connections;
+        this.threads = threads;
+        this.duration = duration;
+        this.warmup = warmup;
+        this.rate = rate;
+        //one request on one connection, if it is closed after the response
+        this.pipeline = keepAlive ? Math.max(1, pipeline) : 1;
+        this.keepAlive = keepAlive;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        String name = null;
+        String csv = null;
+        String main = null;
+        String mainArgs = "";
+        int connections = 16;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long duration = 10;
+        long warmup = 3;
+        double rate = 0;
+        int pipeline = 1;
+        boolean keepAlive = true;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--url":
+                    url = value;
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--duration":
+                    duration = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    warmup = Long.parseLong(value);
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(value);
+                    break;
+                case "--pipeline":
+                    pipeline = Integer.parseInt(value);
+                    break;
+                case "--keepalive":
+                    keepAlive = Boolean.parseBoolean(value);
+                    break;
+                case "--main":
+                    main = value;
+                    break;
+                case "--args":
+                    mainArgs = value;
+                    break;
+                case "--name":
+                    name = value;
+                    break;
+                case "--csv":
+                    csv = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if (url == null) {
+            System.err.println("usage: LoadGenerator --url http://host:port/path|local://name/path"
+                    + " [--connections n] [--threads n] [--duration s] [--warmup s] [--rate r] [--pipeline n]"
+                    + " [--keepalive false] [--main class --args \"a b\"] [--name name --csv file]");
+            System.exit(1);
+        }
+        if (main != null) {
+            startServer(main, mainArgs.trim().isEmpty() ? new String[0] : mainArgs.trim().split("\\s+"));
+        }
+        LoadGenerator generator = new LoadGenerator(URI.create(url), connections, threads, duration, warmup,
+                rate, pipeline, keepAlive);
+        Result result = generator.run();
+        System.out.println(result);
+        if (csv != null) {
+            result.appendTo(csv, name == null ? url : name);
+        }
+        //the server started by --main may not stop by itself
+        System.exit(0);
+    }
+
+    /**
+     * run the main method of the server in a daemon thread
+     */
+    private static void startServer(String main, String[] args) throws Exception {
+        Method method = Class.forName(main).getMethod("main", String[].class);
+        Thread thread = new Thread(() -> {
+            try {
+                method.invoke(null, (Object) args);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "server-main");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    boolean local() {
+        return "local".equals(uri.getScheme());
+    }
+
+    SocketAddress address() {
+        if (local()) {
+            return new LocalAddress(uri.getHost() != null ? uri.getHost() : uri.getAuthority());
+        }
+        return new InetSocketAddress(uri.getHost(), uri.getPort() != -1 ? uri.getPort() : 80);
+    }
+
+    /**
+     * the path and the query of the requests
+     */
+    String target() {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+    }
+
+    Bootstrap bootstrap(EventLoop loop) {
+        Bootstrap bootstrap = new Bootstrap().group(loop);
+        if (local()) {
+            return bootstrap.channel(LocalChannel.class);
+        }
+        return bootstrap.channel(NioSocketChannel.class).option(ChannelOption.TCP_NODELAY, true);
+    }
+
+    Result run() throws InterruptedException {
+        EventLoopGroup group = local() ? new DefaultEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+        try {
+            waitForServer(group.next());
+
+            //the open loop plans the requests from here, the warmup included
+            long start = System.nanoTime();
+            //nanoseconds between two requests of one connection
+            double interval = rate > 0 ? connections * 1e9 / rate : 0;
+            List<Connection> list = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                EventLoop loop = group.next();
+                //the connections start one after another in the interval, not all at once
+                Connection connection = new Connection(this, loop, start + (long) (interval * i / connections), interval);
+                list.add(connection);
+                loop.execute(connection::connect);
+            }
+
+            TimeUnit.SECONDS.sleep(warmup);
+            recording = true;
+            long measureStart = System.nanoTime();
+            TimeUnit.SECONDS.sleep(duration);
+            recording = false;
+            long elapsed = System.nanoTime() - measureStart;
+            stopped = true;
+
+            //the channels are closed before the event loops, a server in this jvm may still write to them
+            List<Future<?>> closed = new ArrayList<>(connections);
+            for (Connection connection : list) {
+                closed.add(connection.close());
+            }
+            for (Future<?> future : closed) {
+                future.awaitUninterruptibly(1, TimeUnit.SECONDS);
+            }
+            return new Result(this, elapsed);
+        } finally {
+            //the quiet period takes the responses of a server in this jvm still writing to the closed channels
+            group.shutdownGracefully(200, 1000, TimeUnit.MILLISECONDS).syncUninterruptibly();
+        }
+    }
+
+    /**
+     * wait up to 30 seconds for the server to take a connection
+     */
+    private void waitForServer(EventLoop loop) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (true) {
+            try {
+                Channel channel = bootstrap(loop).handler(new ChannelInboundHandlerAdapter())
+                        .connect(address()).sync().channel();
+                channel.close().sync();
+                return;
+            } catch (Exception e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("can not connect to " + uri, e);
+                }
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        }
+    }
+
+    static final class Result {
+
+        final LoadGenerator generator;
+        final LatencyHistogram.Snapshot latency;
+        final LatencyHistogram.Snapshot service;
+        final long errors;
+        final long elapsedNanos;
+
+        Result(LoadGenerator generator, long elapsedNanos) {
+            this.generator = generator;
+            this.latency = generator.latency.snapshot();
+            this.service = generator.service.snapshot();
+            this.errors = generator.errors.sum();
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double throughput() {
+            return latency.total() * 1e9 / elapsedNanos;
+        }
+
+        void appendTo(String file, String name) throws IOException {
+            boolean header = !new java.io.File(file).exists();
+            try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+                if (header) {
+                    out.println("name,connections,rate,pipeline,requests,errors,throughput,"
+                            + "p50_ms,p90_ms,p99_ms,p999_ms,max_ms");
+                }
+                out.printf(Locale.ROOT, "%s,%d,%.0f,%d,%d,%d,%.1f", name, generator.connections, generator.rate,
+                        generator.pipeline, latency.total(), errors, throughput());
+                for (double percentile : PERCENTILES) {
+                    out.printf(Locale.ROOT, ",%.3f", latency.percentile(percentile) / 1000.0);
+                }
+                out.println();
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.ROOT, "%s, %d connections, pipeline %d%s%n",
+                    generator.rate > 0 ? String.format(Locale.ROOT, "open loop at %.0f requests/s", generator.rate)
+                            : "closed loop",
+                    generator.connections, generator.pipeline, generator.keepAlive ? "" : ", no keep-alive"));
+            out.append(String.format(Locale.ROOT, "%d requests in %.1fs, %d errors, %.1f requests/s%n",
+                    latency.total(), elapsedNanos / 1e9, errors, throughput()));
+            if (generator.rate > 0) {
+                out.append(String.format(Locale.ROOT, "%nlatency from the planned time%n"));
+                distribution(out, latency);
+                out.append(String.format(Locale.ROOT, "%nservice time from the written request%n"));
+                distribution(out, service);
+            } else {
+                out.append(String.format(Locale.ROOT, "%nlatency%n"));
+                distribution(out, latency);
+            }
+            return out.toString();
+        }
+
+        /**
+         * the percentiles like the output of HdrHistogram, two steps in every half
+         */
+        private static void distribution(StringBuilder out, LatencyHistogram.Snapshot snapshot) {
+            out.append(String.format(Locale.ROOT, "%12s %14s %10s %14s%n", "Value(ms)", "Percentile", "TotalCount", "1/(1-Percentile)"));
+            if (snapshot.total() == 0) {
+                return;
+            }
+            List<Double> percentiles = new ArrayList<>(Arrays.asList(0.0, 0.25));
+            for (double half = 0.5; 1 / (1 - half) <= snapshot.total(); half = (1 + half) / 2) {
+                percentiles.add(half);
+                percentiles.add(half + (1 - half) / 2 * 0.5);
+            }
+            percentiles.add(1.0);
+            for (double percentile : percentiles) {
+                long value = snapshot.percentile(Math.max(percentile, Double.MIN_VALUE));
+                out.append(String.format(Locale.ROOT, "%12.3f %14.12f %10d %14s%n", value / 1000.0, percentile,
+                        (long) Math.ceil(percentile * snapshot.total()),
+                        percentile == 1.0 ? "" : String.format(Locale.ROOT, "%.2f", 1 / (1 - percentile))));
+            }
+        }
+    }
+}
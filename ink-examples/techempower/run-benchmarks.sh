@@ -0,0 +1,52 @@
+#!/bin/bash
+#
+# run the TechEmpower test types against the app in this module,
+# with the load generator of ink-benchmarks, and keep the results
+#
+# run `mvn install` in the root project first
+#
+#   ./run-benchmarks.sh [results.csv]
+#
+# CONNECTIONS, DURATION, WARMUP and PORT can be set in the environment,
+# the results of one run are appended to the csv, one line of every test type
+
+set -e
+
+cd "$(dirname "$0")"
+ROOT=$(cd ../.. && pwd)
+RESULTS=${1:-results/$(date +%Y%m%d-%H%M%S).csv}
+CONNECTIONS=${CONNECTIONS:-64}
+DURATION=${DURATION:-15}
+WARMUP=${WARMUP:-5}
+PORT=${PORT:-8080}
+
+mkdir -p "$(dirname "$RESULTS")"
+
+echo "building the app and the load generator"
+mvn -B -q compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+(cd "$ROOT/ink-benchmarks" && mvn -B -q package)
+
+java -cp "target/classes:$(cat target/classpath.txt)" org.ink.examples.techempower.Main "$PORT" > target/server.log 2>&1 &
+SERVER=$!
+trap 'kill $SERVER 2>/dev/null' EXIT
+
+for i in $(seq 1 60); do
+    curl -s -o /dev/null "http://127.0.0.1:$PORT/json" && break
+    sleep 0.5
+done
+
+run() {
+    echo "== $1"
+    java -cp "$ROOT/ink-benchmarks/target/benchmarks.jar" org.ink.benchmark.load.LoadGenerator \
+        --url "http://127.0.0.1:$PORT$2" --connections "$CONNECTIONS" \
+        --duration "$DURATION" --warmup "$WARMUP" --name "$1" --csv "$RESULTS"
+}
+
+run plaintext  /plaintext
+run json       /json
+run db         /db
+run queries-20 "/queries?queries=20"
+run fortunes   /fortunes
+run updates-20 "/updates?queries=20"
+
+echo "results in $RESULTS"
@@ -0,0 +1,131 @@
+package org.ink.examples.techempower;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.ink.WebConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * the MyBatis mappers on the database of the benchmarks,
+ * an H2 database in memory by default, in place of the MySQL of TechEmpower
+ *
+ * <ul>
+ *     <li>datasource_url, datasource_driver, datasource_username, datasource_password  another database</li>
+ *     <li>datasource_pool_size  the count of the connections, default is 64</li>
+ * </ul>
+ *
+ * the tables are created and filled at the start if they are not there
+ *
+ * @author zhuyichen
+ */
+public final class Database {
+
+    private static final Logger log = LoggerFactory.getLogger(Database.class);
+
+    static final int WORLD_ROWS = 10000;
+
+    private static final String[] FORTUNES = {
+            "fortune: No such file or directory",
+            "A computer scientist is someone who fixes things that aren't broken.",
+            "After enough decimal places, nobody gives a damn.",
+            "A bad random number generator: 1, 1, 1, 1, 1, 4.33e+67, 1, 1, 1",
+            "A computer program does what you tell it to do, not what you want it to do.",
+            "Emacs is a nice operating system, but I prefer UNIX. — Tom Christaensen",
+            "Any program that runs right is obsolete.",
+            "A list is only as strong as its weakest link. — Donald Knuth",
+            "Feature: A bug with seniority.",
+            "Computers make very fast, very accurate mistakes.",
+            "<script>alert(\"This should not be displayed in a browser alert box.\");</script>",
+            "フレームワークのベンチマーク"
+    };
+
+    private static SqlSessionFactory factory;
+
+    private Database() {
+    }
+
+    static synchronized void configure() throws SQLException {
+        if (factory != null) {
+            return;
+        }
+        String url = config("datasource_url", "jdbc:h2:mem:hello_world;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        PooledDataSource dataSource = new PooledDataSource(
+                config("datasource_driver", "org.h2.Driver"), url,
+                config("datasource_username", "sa"), config("datasource_password", ""));
+        int poolSize = WebConfig.getIntConfig("datasource_pool_size", 64);
+        dataSource.setPoolMaximumActiveConnections(poolSize);
+        dataSource.setPoolMaximumIdleConnections(poolSize);
+
+        try (Connection connection = dataSource.getConnection()) {
+            fill(connection);
+        }
+
+        Configuration configuration = new Configuration(
+                new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(WorldMapper.class);
+        configuration.addMapper(FortuneMapper.class);
+        factory = new SqlSessionFactoryBuilder().build(configuration);
+        log.info("database {} with {} connections", url, poolSize);
+    }
+
+    /**
+     * @param autoCommit false to commit by {@code SqlSession.commit()}
+     */
+    static SqlSession open(boolean autoCommit) {
+        return factory.openSession(autoCommit);
+    }
+
+    static int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, WORLD_ROWS + 1);
+    }
+
+    private static void fill(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS World (id INT PRIMARY KEY, randomNumber INT NOT NULL)");
+            statement.execute("CREATE TABLE IF NOT EXISTS Fortune (id INT PRIMARY KEY, message VARCHAR(2048) NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+             java.sql.ResultSet count = statement.executeQuery("SELECT COUNT(*) FROM World")) {
+            count.next();
+            if (count.getInt(1) > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO World VALUES (?, ?)")) {
+            for (int id = 1; id <= WORLD_ROWS; id++) {
+                insert.setInt(1, id);
+                insert.setInt(2, randomId());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO Fortune VALUES (?, ?)")) {
+            for (int i = 0; i < FORTUNES.length; i++) {
+                insert.setInt(1, i + 1);
+                insert.setString(2, FORTUNES[i]);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    private static String config(String name, String defaultValue) {
+        String value = WebConfig.getConfig(name);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,91 @@
+package org.ink.examples.techempower;
+
+import org.apache.ibatis.session.SqlSession;
+import org.ink.web.annotation.Blocking;
+import org.ink.web.annotation.Controller;
+import org.ink.web.annotation.GET;
+import org.ink.web.annotation.RequestParam;
+import org.ink.web.annotation.View;
+import org.ink.web.view.Model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the test types with the database, they run on the worker pool
+ *
+ * @author zhuyichen
+ */
+@Controller
+public class DbController {
+
+    @Blocking
+    @GET("/db")
+    public World db() {
+        try (SqlSession session = Database.open(true)) {
+            return session.getMapper(WorldMapper.class).find(Database.randomId());
+        }
+    }
+
+    @Blocking
+    @GET("/queries")
+    public World[] queries(@RequestParam String queries) {
+        World[] worlds = new World[count(queries)];
+        try (SqlSession session = Database.open(true)) {
+            WorldMapper mapper = session.getMapper(WorldMapper.class);
+            for (int i = 0; i < worlds.length; i++) {
+                worlds[i] = mapper.find(Database.randomId());
+            }
+        }
+        return worlds;
+    }
+
+    @Blocking
+    @GET("/updates")
+    public World[] updates(@RequestParam String queries) {
+        World[] worlds = new World[count(queries)];
+        try (SqlSession session = Database.open(false)) {
+            WorldMapper mapper = session.getMapper(WorldMapper.class);
+            for (int i = 0; i < worlds.length; i++) {
+                worlds[i] = mapper.find(Database.randomId());
+                worlds[i].setRandomNumber(Database.randomId());
+            }
+            //the same order in every transaction, no dead lock
+            World[] sorted = worlds.clone();
+            Arrays.sort(sorted, (a, b) -> Integer.compare(a.getId(), b.getId()));
+            for (World world : sorted) {
+                mapper.update(world);
+            }
+            session.commit();
+        }
+        return worlds;
+    }
+
+    @View
+    @Blocking
+    @GET("/fortunes")
+    public String fortunes(Model model) {
+        List<Fortune> fortunes;
+        try (SqlSession session = Database.open(true)) {
+            fortunes = session.getMapper(FortuneMapper.class).findAll();
+        }
+        fortunes.add(new Fortune(0, "Additional fortune added at request time."));
+        Collections.sort(fortunes);
+        model.attr("fortunes", fortunes);
+        return "fortunes.ftl";
+    }
+
+    /**
+     * the count of the queries, 1 to 500
+     */
+    private static int count(String queries) {
+        int count;
+        try {
+            count = queries == null ? 1 : Integer.parseInt(queries.trim());
+        } catch (NumberFormatException e) {
+            count = 1;
+        }
+        return Math.min(500, Math.max(1, count));
+    }
+}
@@ -0,0 +1,41 @@
+package org.ink.examples.techempower;
+
+/**
+ * a row of the table Fortune
+ *
+ * @author zhuyichen
+ */
+public class Fortune implements Comparable<Fortune> {
+
+    private int id;
+    private String message;
+
+    public Fortune() {
+    }
+
+    public Fortune(int id, String message) {
+        this.id = id;
+        this.message = message;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public int compareTo(Fortune o) {
+        return message.compareTo(o.message);
+    }
+}
@@ -0,0 +1,14 @@
+package org.ink.examples.techempower;
+
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * @author zhuyichen
+ */
+public interface FortuneMapper {
+
+    @Select("SELECT id, message FROM Fortune")
+    List<Fortune> findAll();
+}
@@ -0,0 +1,35 @@
+package org.ink.examples.techempower;
+
+import io.netty.buffer.Unpooled;
+import org.ink.web.annotation.Controller;
+import org.ink.web.annotation.GET;
+import org.ink.web.http.HttpHeader;
+import org.ink.web.http.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * the test types without the database, they run on the event loop
+ *
+ * @author zhuyichen
+ */
+@Controller
+public class HelloController {
+
+    private static final byte[] HELLO = "Hello, World!".getBytes(StandardCharsets.US_ASCII);
+
+    @GET("/plaintext")
+    public Response plaintext() {
+        //the String body is written as json, so the bytes are set as they are
+        Response response = Response.ok().header(HttpHeader.CONTENT_TYPE, "text/plain").build();
+        response.setContent(Unpooled.wrappedBuffer(HELLO));
+        return response;
+    }
+
+    @GET("/json")
+    public Map<String, String> json() {
+        return Collections.singletonMap("message", "Hello, World!");
+    }
+}
@@ -0,0 +1,21 @@
+package org.ink.examples.techempower;
+
+import org.ink.Ink;
+
+/**
+ * the server of the TechEmpower test types, the port is the first arg, 8080 by default.
+ * {@code local:name} binds the name of the local transport instead, for a load generator in the same jvm
+ *
+ * @author zhuyichen
+ */
+public class Main {
+
+    public static void main(String[] args) throws Exception {
+        String address = args.length > 0 ? args[0] : "8080";
+        Database.configure();
+        Ink ink = address.startsWith("local:")
+                ? new Ink(address.substring("local:".length()), Main.class)
+                : new Ink(Integer.parseInt(address), Main.class);
+        ink.start();
+    }
+}
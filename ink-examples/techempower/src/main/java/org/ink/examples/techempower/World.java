@@ -0,0 +1,36 @@
+package org.ink.examples.techempower;
+
+/**
+ * a row of the table World
+ *
+ * @author zhuyichen
+ */
+public class World {
+
+    private int id;
+    private int randomNumber;
+
+    public World() {
+    }
+
+    public World(int id, int randomNumber) {
+        this.id = id;
+        this.randomNumber = randomNumber;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getRandomNumber() {
+        return randomNumber;
+    }
+
+    public void setRandomNumber(int randomNumber) {
+        this.randomNumber = randomNumber;
+    }
+}
@@ -0,0 +1,16 @@
+package org.ink.examples.techempower;
+
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * @author zhuyichen
+ */
+public interface WorldMapper {
+
+    @Select("SELECT id, randomNumber FROM World WHERE id = #{id}")
+    World find(int id);
+
+    @Update("UPDATE World SET randomNumber = #{randomNumber} WHERE id = #{id}")
+    int update(World world);
+}
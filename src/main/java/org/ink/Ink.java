@@ -6,8 +6,11 @@ import org.ink.db.mybatis.MybatisConfig;
 import org.ink.ioc.IocContext;
 import org.ink.security.SecurityManager;
 import org.ink.server.InkServer;
+import org.ink.web.http.SessionManager;
+import org.ink.web.metrics.MetricsRoutes;
 import org.ink.web.route.Route;
 import org.ink.web.route.RouteRegister;
+import org.ink.web.view.FreeMarkerResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,12 +34,28 @@ public class Ink {
         log.info("JDK_VERSION  : {}", SystemUtils.JAVA_VERSION);
     }
     public Ink(int port, Class<?> configure) {
-        inkServer = new InkServer(port);
+        this(new InkServer(port), configure);
+    }
+
+    /**
+     * the server bound to the name in this jvm, no port, see {@link org.ink.server.LocalClient}
+     */
+    public Ink(String localAddress, Class<?> configure) {
+        this(new InkServer(localAddress), configure);
+    }
+
+    private Ink(InkServer inkServer, Class<?> configure) {
+        this.inkServer = inkServer;
         iocContext = new IocContext(configure);
 
         //get all Service info
         SecurityManager.configure(iocContext, configure);
 
+        //the built-in route of the metrics
+        if (Boolean.parseBoolean(WebConfig.getConfig("metrics"))) {
+            iocContext.registerBean(new MetricsRoutes());
+        }
+
         //get all route info
         routes = RouteRegister.registerRoute(iocContext.getDefinitions());
 
@@ -45,6 +64,12 @@ public class Ink {
 
         MybatisConfig.configure(iocContext.getBean(configure));
 
+        //parse all templates
+        FreeMarkerResolver.configure();
+
+        //load the sessions kept before
+        SessionManager.configure();
+
         inkServer.setList(routes);
     }
 
@@ -55,10 +80,17 @@ public class Ink {
         inkServer.start();
     }
 
+    /**
+     * start the ink server and return at once, for the applications embedding it
+     */
+    public void bind() throws InterruptedException {
+        inkServer.bind();
+    }
+
     /**
      * stop the server
      */
     public void stop() {
-
+        inkServer.stop();
     }
 }
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -23,6 +24,20 @@ import java.util.Properties;
  *     <li>datasource_password      for DATASOURCE_PASSWORD</li>
  *     <li>mybatis_config_file_name for MYBATIS_CONFIG_FILE_NAME</li>
  *     <li>mybatis_environment      for MYBATIS_ENVIRONMENT</li>
+ *     <li>worker_threads           the count of the netty worker threads, default is 2 * cores</li>
+ *     <li>execution_mode           eventloop or worker, where the routes without {@code @Blocking} run</li>
+ *     <li>max_content_length       the max length of the body kept in memory, default is 10M</li>
+ *     <li>max_stream_length        the max length of the upload or the raw body on the disk, default is 1G</li>
+ *     <li>template_update_delay    milliseconds before the template files are checked again, default is never</li>
+ *     <li>transport, listeners, tcp_nodelay, tcp_fastopen, backlog, epoll_mode, local_address
+ *                                  the options of the server sockets, see {@code ServerOptions}</li>
+ *     <li>session_mode, token_key, token_expire, token_cache_size
+ *                                  the stateless mode, see {@code JwtUtil}</li>
+ *     <li>user_cache_size, user_cache_ttl, user_cache_negative_ttl
+ *                                  the users kept for the login, see {@code UserCache}</li>
+ *     <li>metrics                  true to serve the metrics at /metrics, see {@code MetricsRoutes}</li>
+ *     <li>phase_timing, slow_request_millis
+ *                                  the time of every phase of the requests, see {@code PhaseTimer}</li>
  * </ul>
  *
  * @author zhuyichen
@@ -44,7 +59,10 @@ public class WebConfig {
     public static String MYBATIS_CONFIG_FILE_NAME;
     public static String MYBATIS_ENVIRONMENT;
 
-    public static final String PATH = WebConfig.class.getResource("/").getPath();
+    /**
+     * the root of the classpath, empty if the classes are in a jar
+     */
+    public static final String PATH = classPath();
 
     static {
         try {
@@ -56,6 +74,11 @@ public class WebConfig {
         }
     }
 
+    private static String classPath() {
+        URL root = WebConfig.class.getResource("/");
+        return root == null ? "" : root.getPath();
+    }
+
     /**
      * load SecurityKey if you open anthentication mode
      */
@@ -101,6 +124,42 @@ public class WebConfig {
         return properties.getProperty(name);
     }
 
+    /**
+     * get the query result as int
+     *
+     * @param name         query keyword
+     * @param defaultValue returned if the keyword is not set or not a number
+     */
+    public static int getIntConfig(String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("config {} = {} is not a number, use default {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param name         query keyword
+     * @param defaultValue returned if the keyword is not set or not a number
+     */
+    public static long getLongConfig(String name, long defaultValue) {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("config {} = {} is not a number, use default {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
     /**
      * @return configure file
      */
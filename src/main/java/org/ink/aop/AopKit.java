@@ -3,72 +3,96 @@ package org.ink.aop;
 import org.ink.aop.annotation.Before;
 import org.ink.web.http.Request;
 import org.ink.web.http.Response;
+import org.ink.web.route.Invocation;
 import org.ink.web.route.Route;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  *
  * set args in Aop methods
  *
+ * where every arg comes from is compiled once when the aop method
+ * is added to the chain of one route, see {@link #compileArgs}
+ *
  * @author zhuyichen
  */
 class AopKit {
 
-     static void argsSetter(ProxyEntity proxyEntity, Route route, Request request, Response response) {
+    /**
+     * the arg is the {@code Request}
+     */
+    static final int REQUEST = -1;
 
-        Method method = proxyEntity.getProxyMethod();
+    /**
+     * the arg is the {@code Response}
+     */
+    static final int RESPONSE = -2;
 
-        Object[] proxyObjects = proxyEntity.getParameters();
-        Object[] routeObjects = route.getParamters();
-        Parameter[] routeParameters = route.getMethod().getParameters();
+    /**
+     * the arg is left null
+     */
+    static final int NONE = -3;
+
+    /**
+     * @return for every parameter of the aop method, the index of the route arg,
+     * or {@link #REQUEST}, {@link #RESPONSE}, {@link #NONE}
+     */
+    static int[] compileArgs(Method method, Route route) {
         Parameter[] proxyParameters = method.getParameters();
-        assert routeObjects.length == routeParameters.length;
+        Parameter[] routeParameters = route.getMethod().getParameters();
 
-        //response request setter
-        int index = 0;
-        int count = 0;
-        for (Parameter p : proxyParameters) {
+        //only @Before can get the args of the route
+        String[] args = method.getAnnotation(Before.class) == null
+                ? new String[0]
+                : method.getAnnotation(Before.class).args().split(",");
+
+        int[] sources = new int[proxyParameters.length];
+        for (int i = 0; i < proxyParameters.length; i++) {
+            Parameter p = proxyParameters[i];
+            sources[i] = NONE;
             if (p.getType().equals(Response.class)) {
-                proxyObjects[index] = response;
-                count++;
+                sources[i] = RESPONSE;
             }
             else if (p.getType().equals(Request.class)) {
-                proxyObjects[index] = request;
-                count++;
+                sources[i] = REQUEST;
+            }
+            else if (contains(args, p.getName())) {
+                //arg -> route.object[i]
+                for (int j = 0; j < routeParameters.length; j++) {
+                    if (routeParameters[j].getName().equals(p.getName())) {
+                        sources[i] = j;
+                    }
+                }
             }
-            index++;
-        }
-
-        //如果只有response和request参数
-        if (count == index) {
-            return;
         }
+        return sources;
+    }
 
-        //如果还有其他的参数，再继续
-        String[] args = method.getAnnotation(Before.class).args().split(",");
-        //arg -> route.object[i]
-        Map<String, Object> map = new HashMap<>();
-        index = 0;
-        for (Parameter p : routeParameters) {
-            for (String s : args) {
-                if (s.equals(p.getName())) {
-                    map.put(s, routeObjects[index]);
-                }
+    static void argsSetter(int[] sources, Object[] proxyObjects, Invocation invocation) {
+        Object[] routeObjects = invocation.args();
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source >= 0) {
+                proxyObjects[i] = routeObjects[source];
+            }
+            else if (source == REQUEST) {
+                proxyObjects[i] = invocation.request();
+            }
+            else if (source == RESPONSE) {
+                proxyObjects[i] = invocation.response();
             }
-            index++;
         }
+    }
 
-        index = 0;
-        for (Parameter p : proxyParameters) {
-            if (map.containsKey(p.getName())) {
-                proxyObjects[index] = map.get(p.getName());
+    private static boolean contains(String[] args, String name) {
+        for (String s : args) {
+            if (s.trim().equals(name)) {
+                return true;
             }
-            index++;
         }
+        return false;
     }
 
 }
@@ -1,8 +1,7 @@
 package org.ink.aop;
 
 
-import org.ink.web.http.Request;
-import org.ink.web.http.Response;
+import org.ink.web.route.Invocation;
 import org.ink.web.route.Route;
 
 import java.util.ArrayList;
@@ -17,30 +16,34 @@ public class ProxyChain {
 
     private List<ProxyEntity> proxyEntities = new ArrayList<>();
 
+    //the compiled args of every entity, in the same order
+    private List<int[]> proxyArgs = new ArrayList<>();
+
     private ChainType chainType = ChainType.BEFORE;
 
     public ProxyChain(ChainType chainType) {
         this.chainType = chainType;
     }
 
-    void addProxyEntity(ProxyEntity proxyEntity) {
+    void addProxyEntity(ProxyEntity proxyEntity, Route route) {
         proxyEntities.add(proxyEntity);
+        proxyArgs.add(AopKit.compileArgs(proxyEntity.getProxyMethod(), route));
     }
 
     public int size() {
         return proxyEntities.size();
     }
 
-    public boolean doChain(Request request, Response response, Route route) {
+    public boolean doChain(Invocation invocation) {
         if (chainType.equals(ChainType.BEFORE)) {
-            for (ProxyEntity entity : proxyEntities) {
-                if (!entity.doAction(request, response, route)) {
+            for (int i = 0; i < proxyEntities.size(); i++) {
+                if (!proxyEntities.get(i).doAction(invocation, proxyArgs.get(i))) {
                     return false;
                 }
             }
         } else {
-            for (ProxyEntity entity : proxyEntities) {
-                entity.doAction(request, response, route);
+            for (int i = 0; i < proxyEntities.size(); i++) {
+                proxyEntities.get(i).doAction(invocation, proxyArgs.get(i));
             }
         }
         return true;
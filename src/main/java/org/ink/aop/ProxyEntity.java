@@ -2,9 +2,9 @@ package org.ink.aop;
 
 import org.ink.aop.annotation.After;
 import org.ink.aop.annotation.Before;
-import org.ink.web.http.Request;
-import org.ink.web.http.Response;
-import org.ink.web.route.Route;
+import org.ink.web.route.Invocation;
+import org.ink.web.route.MethodInvoker;
+import org.ink.web.route.MethodInvokers;
 
 import java.lang.reflect.Method;
 
@@ -29,23 +29,29 @@ public class ProxyEntity {
     private Object methodObject;
 
     /**
-     * the parameters of the methods
+     * the count of the parameters,
+     * the array is created for every call, so it is not shared between threads
      */
-    private Object[] parameters;
+    private final int parameterCount;
+
+    /**
+     * calls the method on the object
+     */
+    private final MethodInvoker invoker;
 
 
     ProxyEntity(Method proxyMethod, Object target) {
         this.proxyMethod = proxyMethod;
         this.methodObject = target;
-        int i = proxyMethod.getParameterCount();
-        parameters = new Object[i];
+        this.parameterCount = proxyMethod.getParameterCount();
+        this.invoker = MethodInvokers.create(target, proxyMethod);
     }
 
-    boolean doAction(Request request, Response response, Route route) {
-        proxyMethod.setAccessible(true);
+    boolean doAction(Invocation invocation, int[] args) {
         try {
-            AopKit.argsSetter(this, route, request, response);
-            Object result = proxyMethod.invoke(methodObject, parameters);
+            Object[] parameters = new Object[parameterCount];
+            AopKit.argsSetter(args, parameters, invocation);
+            Object result = invoker.invoke(parameters);
             if (result == null) {
                 return true;
             } else {
@@ -62,10 +68,6 @@ public class ProxyEntity {
         return proxyMethod;
     }
 
-    Object[] getParameters() {
-        return parameters;
-    }
-
 
     @Override
     public String toString() {
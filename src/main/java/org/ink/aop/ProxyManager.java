@@ -98,14 +98,14 @@ public class ProxyManager {
         routes.forEach(route -> {
             beforeMap.forEach((pattern, proxyEntity) -> {
                 if (pattern.matcher(route.path()).matches()) {
-                    route.beforeProxyChain().addProxyEntity(proxyEntity);
+                    route.beforeProxyChain().addProxyEntity(proxyEntity, route);
                     log.info("add beforeAop {} to route {}", proxyEntity, route);
                 }
             });
 
             afterMap.forEach((pattern, proxyEntity) -> {
                 if (pattern.matcher(route.path()).matches()) {
-                    route.afterProxyChain().addProxyEntity(proxyEntity);
+                    route.afterProxyChain().addProxyEntity(proxyEntity, route);
                     log.info("add afterAop {} to route {}", proxyEntity, route);
                 }
             });
@@ -5,6 +5,7 @@ import org.ink.web.WebContext;
 import org.ink.web.annotation.Controller;
 import org.ink.web.annotation.POST;
 import org.ink.web.annotation.RequestParam;
+import org.ink.web.http.Cookie;
 import org.ink.web.http.Response;
 
 import java.util.Collections;
@@ -18,6 +19,14 @@ public class AuthenticationRoutes {
         if (user == null) {
            return Response.badRequest().body(Collections.singletonMap("message", "wrong password or user is not exist")).build();
         }
+        else if (SecurityConfig.stateless) {
+            //the token is the session, no session on the server
+            String token = JwtUtil.generateToken(user);
+            Cookie cookie = new Cookie(JwtUtil.TOKEN_COOKIE, token);
+            cookie.setMaxAge(JwtUtil.EXPIRE);
+            WebContext.currentResponse().addCookie(cookie);
+            return Response.ok().body(Collections.singletonMap("token", token)).build();
+        }
         else {
             //set into session
             WebContext.currentSession().setUser(user);
@@ -4,27 +4,30 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import org.ink.security.exception.ForbiddenException;
 import org.ink.security.exception.UnauthorizedException;
 
-public class CheckResult {
+public final class CheckResult {
 
-    private boolean isOk = false;
+    /*
+     * the results are shared, nothing is made for a check
+     * the exceptions are shared too, and have no stack trace
+     * only the three results are there, they can not be changed
+     */
 
-    private HttpResponseStatus status;
+    public static final CheckResult OK = new CheckResult(true, null, null);
+    public static final CheckResult UNAUTHORIZED = new CheckResult(false,
+            HttpResponseStatus.UNAUTHORIZED, UnauthorizedException.INSTANCE);
+    public static final CheckResult FORBIDDEN = new CheckResult(false,
+            HttpResponseStatus.FORBIDDEN, ForbiddenException.INSTANCE);
 
-    private Exception exception;
+    private final boolean isOk;
 
-    public CheckResult(boolean isOk) {
-        this.isOk = isOk;
-    }
+    private final HttpResponseStatus status;
+
+    private final Exception exception;
 
-    public CheckResult(HttpResponseStatus status) {
-        this.isOk = false;
+    private CheckResult(boolean isOk, HttpResponseStatus status, Exception exception) {
+        this.isOk = isOk;
         this.status = status;
-        if (status.equals(HttpResponseStatus.UNAUTHORIZED)) {
-            exception = new UnauthorizedException();
-        }
-        else if (status.equals(HttpResponseStatus.FORBIDDEN)) {
-            exception = new ForbiddenException();
-        }
+        this.exception = exception;
     }
 
     public Exception exception() {
@@ -35,4 +38,8 @@ public class CheckResult {
         return isOk;
     }
 
+    public HttpResponseStatus status() {
+        return status;
+    }
+
 }
@@ -1,41 +1,152 @@
 package org.ink.security;
 
-import io.jsonwebtoken.*;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import org.ink.WebConfig;
 import org.ink.security.user.User;
+import org.ink.web.http.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.Date;
-import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * the HMAC signed token of the user, for the stateless mode,
+ * the user name and the roles are in the token, so any node can check it without the session
+ *
+ * the token is a JWT signed by HS256, made here with {@link Mac},
+ * jjwt 0.7.0 needs javax.xml.bind, which is not in the jdk after 8.
+ * only the header made here is accepted, so the alg can not be changed by the client
+ *
+ * the token is read from the cookie {@link #TOKEN_COOKIE}, or the header {@code Authorization: Bearer <token>}
+ * the token checked is kept in {@link TokenCache}, so a token is checked once, not once every request
+ *
+ * <p>config and their name</p>
+ * <ul>
+ *     <li>session_mode      session or token, default is session</li>
+ *     <li>token_key         the key of the HMAC, default is the security key</li>
+ *     <li>token_expire      seconds a token can be used, default is 7 days</li>
+ *     <li>token_cache_size  the count of the tokens kept, default is 65536</li>
+ * </ul>
+ *
+ * @author zhuyichen
+ */
 public class JwtUtil {
-//    @SuppressWarnings("unchecked")
-//    public static User getUserFromToken(String jws) {
-//        User user = new User();
-//        Jws<Claims> claimsJws = Jwts.parser()
-//                .setSigningKey(SecurityConfig.KEY)
-//                .parseClaimsJws(jws);
-//
-//        user.setUserName((String) claimsJws.getBody().get("sub"));
-//        user.setRoles((List<String>) claimsJws.getBody().get("roles"));
-//        return user;
-//    }
-//    public static String generateToken(User user) {
-//        return Jwts.builder()
-//                .claim("sub", user.getUserName())
-//                .claim("roles", user.getRoles())
-//                .setExpiration(new Date(System.currentTimeMillis() + 604800))
-//                .signWith(SignatureAlgorithm.HS256, SecurityConfig.KEY)
-//                .compact();
-//    }
-//    public static boolean validateToken(String jws) {
-//        try {
-//            Jws<Claims> claimsJws = Jwts.parser()
-//                    .setSigningKey(SecurityConfig.KEY)
-//                    .parseClaimsJws(jws);
-//        } catch (JwtException | NullPointerException e) {
-//            e.printStackTrace();
-//            error or just out of time
-//            return false;
-//        }
-//        return true;
-//    }
+
+    private static final Logger log = LoggerFactory.getLogger(JwtUtil.class);
+
+    public static final String TOKEN_COOKIE = "INK_TOKEN";
+
+    private static final String BEARER = "Bearer ";
+
+    static final long EXPIRE = WebConfig.getLongConfig("token_expire", 7 * 24 * 60 * 60);
+
+    private static final TokenCache cache = new TokenCache(WebConfig.getIntConfig("token_cache_size", 65536));
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final String HEADER = ENCODER.encodeToString(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static SecretKeySpec key;
+
+    //Mac is not thread safe
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * set the key of the HMAC
+     */
+    static void setKey(String key) {
+        JwtUtil.key = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    public static String generateToken(User user) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", user.getUserName());
+        claims.put("roles", user.getRoles());
+        //seconds, as the jwt
+        claims.put("exp", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + EXPIRE);
+        String content = HEADER + '.' + ENCODER.encodeToString(JSON.toJSONBytes(claims));
+        return content + '.' + ENCODER.encodeToString(sign(content));
+    }
+
+    /**
+     * @return null if the token is wrong or out of time
+     */
+    public static User getUserFromToken(String jws) {
+        long now = System.currentTimeMillis();
+        User user = cache.get(jws, now);
+        if (user != null) {
+            return user;
+        }
+        int first = jws.indexOf('.');
+        int last = jws.lastIndexOf('.');
+        if (first != HEADER.length() || first == last || !jws.startsWith(HEADER)) {
+            return null;
+        }
+        JSONObject claims;
+        try {
+            //the text is compared, the decoder takes any value of the unused bits of the last char
+            byte[] signature = jws.substring(last + 1).getBytes(StandardCharsets.ISO_8859_1);
+            if (!MessageDigest.isEqual(signature, ENCODER.encode(sign(jws.substring(0, last))))) {
+                log.debug("wrong signature of the token");
+                return null;
+            }
+            claims = JSON.parseObject(new String(DECODER.decode(jws.substring(first + 1, last)), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | JSONException e) {
+            log.debug("wrong token: {}", e.getMessage());
+            return null;
+        }
+        long expires = TimeUnit.SECONDS.toMillis(claims.getLongValue("exp"));
+        if (expires <= now) {
+            //just out of time
+            return null;
+        }
+        user = new User();
+        user.setUserName(claims.getString("sub"));
+        user.setRoles(claims.getJSONArray("roles") == null ? null : claims.getJSONArray("roles").toJavaList(String.class));
+        cache.put(jws, user, expires);
+        return user;
+    }
+
+    public static boolean validateToken(String jws) {
+        return getUserFromToken(jws) != null;
+    }
+
+    private static byte[] sign(String content) {
+        return MAC.get().doFinal(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * the token of the request, the header first
+     *
+     * @return null if not found
+     */
+    static String tokenOf(Request request) {
+        String authorization = request.header("Authorization");
+        if (authorization != null && authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return authorization.substring(BEARER.length()).trim();
+        }
+        return request.getCookie(TOKEN_COOKIE);
+    }
 }
@@ -0,0 +1,62 @@
+package org.ink.security;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the role names as the bits of a long
+ *
+ * the roles of the routes get their bits when the routes are registered,
+ * a role only the users have gets the unknown bit, no route has it
+ *
+ * @author zhuyichen
+ */
+public final class Roles {
+
+    //the last bit is for the unknown roles
+    private static final int MAX_ROLES = 63;
+
+    private static final long UNKNOWN = 1L << MAX_ROLES;
+
+    private static final Map<String, Long> bits = new ConcurrentHashMap<>();
+
+    private Roles() {
+    }
+
+    /**
+     * @return the bit of the role, a new one if not registered
+     */
+    public static synchronized long register(String role) {
+        Long bit = bits.get(role);
+        if (bit == null) {
+            if (bits.size() == MAX_ROLES) {
+                throw new IllegalStateException("too many roles, at most " + MAX_ROLES + ": " + role);
+            }
+            bit = 1L << bits.size();
+            bits.put(role, bit);
+        }
+        return bit;
+    }
+
+    /**
+     * @return the bits of the roles, 0 if null
+     */
+    public static long maskOf(Collection<String> roles) {
+        long mask = 0;
+        if (roles != null) {
+            for (String role : roles) {
+                Long bit = bits.get(role);
+                mask |= bit == null ? UNKNOWN : bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * all the roles of the user are in the roles of the route
+     */
+    public static boolean permits(long routeMask, long userMask) {
+        return (userMask & ~routeMask) == 0;
+    }
+}
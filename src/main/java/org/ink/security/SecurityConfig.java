@@ -3,4 +3,6 @@ package org.ink.security;
 public class SecurityConfig {
     public static String KEY;
     public static boolean anthenticationOpen;
+    //the user is in the signed token, not in the session
+    public static boolean stateless;
 }
@@ -1,6 +1,5 @@
 package org.ink.security;
 
-import io.netty.handler.codec.http.HttpResponseStatus;
 import org.ink.WebConfig;
 import org.ink.db.annotation.Service;
 import org.ink.ioc.bean.BeanDefinition;
@@ -9,6 +8,8 @@ import org.ink.security.annotation.UserDetail;
 import org.ink.security.user.User;
 import org.ink.security.user.UserDetailService;
 import org.ink.web.WebContext;
+import org.ink.web.http.HttpSession;
+import org.ink.web.route.Invocation;
 import org.ink.web.route.Route;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +26,8 @@ public class SecurityManager {
     private static List<UserDetailService> roleDetails = new ArrayList<>();
     private static final Logger log = LoggerFactory.getLogger(SecurityManager.class);
 
+    private static final UserCache userCache = new UserCache();
+
     public static void configure(IocContext iocContext, Class<?> configureclass) {
         log.info("starting configure securityService...");
 
@@ -34,15 +37,27 @@ public class SecurityManager {
             BeanDefinition beanDefinition = beanDefinitionMap.get(key);
             Class<?> clazz = beanDefinition.getObject().getClass();
             if (clazz.getAnnotation(Service.class) != null) {
-                Class superclass = clazz.getSuperclass();
                 //如果实现了UserDetailService接口的，就作为一个登陆选项
-                if (superclass.equals(UserDetailService.class)) {
+                if (UserDetailService.class.isAssignableFrom(clazz)) {
                     roleDetails.add((UserDetailService) beanDefinition.getObject());
                 }
             }
         }
 
-        if (WebConfig.SECURITY_KEY != null) {
+        if ("token".equals(WebConfig.getConfig("session_mode"))) {
+            String key = WebConfig.getConfig("token_key");
+            if (key == null) {
+                key = WebConfig.SECURITY_KEY;
+            }
+            if (key == null) {
+                throw new IllegalStateException("token_key is needed for session_mode token");
+            }
+            JwtUtil.setKey(key);
+            SecurityConfig.stateless = true;
+            log.info("stateless mode, the user is in the token");
+        }
+
+        if (WebConfig.SECURITY_KEY != null || SecurityConfig.stateless) {
             iocContext.registerBean(new AuthenticationRoutes());
             SecurityConfig.KEY = WebConfig.SECURITY_KEY;
             SecurityConfig.anthenticationOpen = true;
@@ -53,36 +68,74 @@ public class SecurityManager {
 
     static User login(String userName, String password) {
 
-        User currentUser = null;
-        for (UserDetailService roleDetails : roleDetails) {
-            currentUser = roleDetails.loadUser(userName);
-            if (currentUser != null && currentUser.getPassword().equals(password)) {
+        for (User currentUser : userCache.get(userName, SecurityManager::loadUsers)) {
+            if (currentUser.getPassword() != null && currentUser.getPassword().equals(password)) {
                 return currentUser;
             }
         }
-        return currentUser;
+        //not found, or the password is wrong
+        return null;
     }
 
-    public static CheckResult check(Route route) {
-        if (WebContext.currentSession().user() == null) {
-            return new CheckResult(HttpResponseStatus.UNAUTHORIZED);
-        }
-        User user = WebContext.currentSession().user();
-        if (route.containsRolesAll(user.getRoles())) {
-            return new CheckResult(true);
+    /**
+     * the users of the name from every UserDetailService
+     */
+    private static List<User> loadUsers(String userName) {
+        List<User> users = new ArrayList<>(1);
+        for (UserDetailService roleDetails : roleDetails) {
+            User user = roleDetails.loadUser(userName);
+            if (user != null) {
+                users.add(user);
+            }
         }
-        else {
-            return new CheckResult(HttpResponseStatus.FORBIDDEN);
+        return users;
+    }
+
+    /**
+     * drop the user kept for the login,
+     * call it after the roles or the password of the user are changed
+     */
+    public static void invalidateUser(String userName) {
+        userCache.invalidate(userName);
+    }
+
+    /**
+     * drop all the users kept for the login
+     */
+    public static void invalidateUsers() {
+        userCache.invalidateAll();
+    }
+
+    /**
+     * the user of current request, from the token in the stateless mode, or from the session
+     *
+     * @return null if not login
+     */
+    public static User currentUser() {
+        if (SecurityConfig.stateless) {
+            String token = JwtUtil.tokenOf(WebContext.currentRequest());
+            return token == null ? null : JwtUtil.getUserFromToken(token);
         }
+        //no session is created for the check
+        HttpSession session = WebContext.existingSession();
+        return session == null ? null : session.user();
+    }
 
+    public static CheckResult check(Route route) {
+        User user = currentUser();
+        if (user == null) {
+            return CheckResult.UNAUTHORIZED;
+        }
+        //one AND of the bits of the roles
+        return Roles.permits(route.roleMask(), user.roleMask()) ? CheckResult.OK : CheckResult.FORBIDDEN;
     }
 
-    static void UserDetailSetter(Route route, User user) {
-        Parameter[] parameters = route.getMethod().getParameters();
+    static void UserDetailSetter(Invocation invocation, User user) {
+        Parameter[] parameters = invocation.route().getMethod().getParameters();
         for (int i = 0; i < parameters.length; i++) {
             for (Annotation annotation : parameters[i].getAnnotations()) {
                 if (annotation instanceof UserDetail) {
-                    route.getParamters()[i] = user;
+                    invocation.args()[i] = user;
                 }
             }
         }
@@ -0,0 +1,60 @@
+package org.ink.security;
+
+import org.ink.security.user.User;
+
+/**
+ * the tokens already checked
+ *
+ * the slot is chosen by the hash of the token, one token in one slot,
+ * a new token just takes the place of the old one in the same slot.
+ * the entries never change, so the slots are read and written without any lock
+ *
+ * @author zhuyichen
+ */
+final class TokenCache {
+
+    private static final class Entry {
+        final String token;
+        final User user;
+        final long expires;
+
+        Entry(String token, User user, long expires) {
+            this.token = token;
+            this.user = user;
+            this.expires = expires;
+        }
+    }
+
+    private final Entry[] entries;
+
+    private final int mask;
+
+    /**
+     * @param size rounded up to a power of 2
+     */
+    TokenCache(int size) {
+        size = Integer.highestOneBit(Math.max(1, size) - 1 << 1 | 1);
+        entries = new Entry[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return null if not found or out of time
+     */
+    User get(String token, long now) {
+        Entry entry = entries[index(token)];
+        if (entry != null && entry.expires > now && entry.token.equals(token)) {
+            return entry.user;
+        }
+        return null;
+    }
+
+    void put(String token, User user, long expires) {
+        entries[index(token)] = new Entry(token, user, expires);
+    }
+
+    private int index(String token) {
+        int h = token.hashCode();
+        return (h ^ h >>> 16) & mask;
+    }
+}
@@ -0,0 +1,111 @@
+package org.ink.security;
+
+import org.ink.WebConfig;
+import org.ink.security.user.User;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * the users loaded by the {@code UserDetailService}s for the login,
+ * so a user logging in again soon does not go to the database
+ *
+ * <ul>
+ *     <li>user_cache_size          the max count of the users kept, default is 10000, 0 is no cache</li>
+ *     <li>user_cache_ttl           seconds a user is kept, default is 60</li>
+ *     <li>user_cache_negative_ttl  seconds an unknown user name is kept, default is 0, not kept</li>
+ * </ul>
+ *
+ * the users are the same objects given by the services, a change of the roles or the password
+ * is not seen until the user is out of time, unless {@link SecurityManager#invalidateUser(String)} is called
+ *
+ * @author zhuyichen
+ */
+final class UserCache {
+
+    private static final class Entry {
+        //the users of all the services with the name, empty if unknown
+        final List<User> users;
+        final long expires;
+
+        Entry(List<User> users, long expires) {
+            this.users = users;
+            this.expires = expires;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttl;
+    private final long negativeTtl;
+
+    //the least recently used is the first, guarded by itself
+    private final LinkedHashMap<String, Entry> entries;
+
+    UserCache() {
+        this(WebConfig.getIntConfig("user_cache_size", 10000),
+                WebConfig.getLongConfig("user_cache_ttl", 60) * 1000,
+                WebConfig.getLongConfig("user_cache_negative_ttl", 0) * 1000);
+    }
+
+    UserCache(int maxSize, long ttl, long negativeTtl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > UserCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * the users of the name, loaded if not kept or out of time
+     * the loader runs out of the lock, two threads may load the same name at the same time
+     */
+    List<User> get(String userName, Function<String, List<User>> loader) {
+        if (maxSize <= 0 || ttl <= 0 || userName == null) {
+            return loader.apply(userName);
+        }
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(userName);
+        }
+        if (entry != null && entry.expires > now) {
+            return entry.users;
+        }
+
+        List<User> users = loader.apply(userName);
+        long keep = users.isEmpty() ? negativeTtl : ttl;
+        synchronized (entries) {
+            if (keep > 0) {
+                entries.put(userName, new Entry(users, now + keep));
+            }
+            else {
+                entries.remove(userName);
+            }
+        }
+        return users;
+    }
+
+    void invalidate(String userName) {
+        synchronized (entries) {
+            entries.remove(userName);
+        }
+    }
+
+    void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -1,4 +1,20 @@
 package org.ink.security.exception;
 
 public class ForbiddenException extends Exception {
+
+    /**
+     * shared by all the requests without the roles, it has no stack trace
+     */
+    public static final ForbiddenException INSTANCE = new ForbiddenException(null, false);
+
+    public ForbiddenException() {
+    }
+
+    public ForbiddenException(String message) {
+        super(message);
+    }
+
+    protected ForbiddenException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
@@ -2,5 +2,19 @@ package org.ink.security.exception;
 
 public class UnauthorizedException extends Exception {
 
-}
+    /**
+     * shared by all the requests without a user, it has no stack trace
+     */
+    public static final UnauthorizedException INSTANCE = new UnauthorizedException(null, false);
+
+    public UnauthorizedException() {
+    }
 
+    public UnauthorizedException(String message) {
+        super(message);
+    }
+
+    protected UnauthorizedException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+}
@@ -1,5 +1,7 @@
 package org.ink.security.user;
 
+import org.ink.security.Roles;
+
 import java.util.List;
 
 public class User {
@@ -8,6 +10,10 @@ public class User {
     private String password;
     private List<String> roles;
 
+    //the bits of the roles, computed once
+    private long roleMask;
+    private volatile boolean masked;
+
     public void setUserName(String userName) {
         this.userName = userName;
     }
@@ -18,6 +24,7 @@ public class User {
 
     public void setRoles(List<String> roles) {
         this.roles = roles;
+        this.masked = false;
     }
 
     public User() {}
@@ -39,4 +46,15 @@ public class User {
     public List<String> getRoles() {
         return roles;
     }
+
+    /**
+     * the bits of the roles, see {@link Roles}
+     */
+    public long roleMask() {
+        if (!masked) {
+            roleMask = Roles.maskOf(roles);
+            masked = true;
+        }
+        return roleMask;
+    }
 }
@@ -1,18 +1,36 @@
 package org.ink.server;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalServerChannel;
+import org.ink.WebConfig;
 import org.ink.server.netty.HttpChannelInitializer;
 import org.ink.web.route.Route;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * the transport is nio, or epoll on linux,
+ * see {@link ServerOptions} for the options of the sockets
+ *
+ * the local transport binds a name in this jvm and no port,
+ * the requests of a {@link LocalClient} go through the same pipeline without the kernel
+ *
  * @author zhuyichen
  */
 public class InkServer {
@@ -20,6 +38,11 @@ public class InkServer {
 
     private int port;
     private List<Route> list;
+    private ServerOptions options = ServerOptions.fromConfig();
+
+    private EventLoopGroup boss;
+    private EventLoopGroup worker;
+    private final List<Channel> channels = new ArrayList<>();
 
     public InkServer() {
         this.port = 8000;
@@ -27,27 +50,128 @@ public class InkServer {
     public InkServer(int port) {
         this.port = port;
     }
-    public void start() {
 
-        EventLoopGroup boss = new NioEventLoopGroup(1);
-        EventLoopGroup worker = new NioEventLoopGroup();
+    /**
+     * bind the name of the local transport, not a port
+     */
+    public InkServer(String localAddress) {
+        this.port = 0;
+        this.options.setLocalAddress(localAddress);
+    }
+
+    /**
+     * bind and wait until the server is stopped
+     */
+    public void start() {
         try {
-            ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(boss,worker)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new HttpChannelInitializer(list));
-            ChannelFuture future = bootstrap.bind(port).sync();
-            log.info("start listen in port {}", port);
-            future.channel().closeFuture().sync();
+            bind();
+            for (Channel channel : channels) {
+                channel.closeFuture().sync();
+            }
         } catch (Exception e ) {
             e.printStackTrace();
         } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * bind and return, for the servers embedded in the applications and the tests
+     */
+    public void bind() throws InterruptedException {
+        if (options.localAddress() != null) {
+            bindLocal();
+            return;
+        }
+
+        boolean epoll = useEpoll();
+        //every listener accepts on its own boss thread
+        int listeners = epoll ? options.listeners() : 1;
+        //0 means netty default, 2 * cores
+        int workerThreads = WebConfig.getIntConfig("worker_threads", 0);
+
+        boss = epoll ? new EpollEventLoopGroup(listeners) : new NioEventLoopGroup(1);
+        worker = epoll ? new EpollEventLoopGroup(workerThreads) : new NioEventLoopGroup(workerThreads);
+        Class<? extends ServerChannel> channelClass = epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(boss,worker)
+                .channel(channelClass)
+                .childOption(ChannelOption.TCP_NODELAY, options.tcpNoDelay())
+                .childHandler(new HttpChannelInitializer(list));
+        if (options.backlog() > 0) {
+            bootstrap.option(ChannelOption.SO_BACKLOG, options.backlog());
+        }
+        if (epoll) {
+            EpollMode mode = options.edgeTriggered() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+            bootstrap.option(EpollChannelOption.EPOLL_MODE, mode)
+                    .childOption(EpollChannelOption.EPOLL_MODE, mode);
+            if (listeners > 1) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            if (options.tcpFastOpen() > 0) {
+                bootstrap.option(EpollChannelOption.TCP_FASTOPEN, options.tcpFastOpen());
+            }
+        }
+
+        for (int i = 0; i < listeners; i++) {
+            channels.add(bootstrap.bind(port).sync().channel());
+        }
+        log.info("start listen in port {} with {}, {} listeners", port, epoll ? "epoll" : "nio", listeners);
+    }
+
+    private void bindLocal() throws InterruptedException {
+        int workerThreads = WebConfig.getIntConfig("worker_threads", 0);
+        boss = new DefaultEventLoopGroup(1);
+        worker = new DefaultEventLoopGroup(workerThreads);
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(boss, worker)
+                .channel(LocalServerChannel.class)
+                .childHandler(new HttpChannelInitializer(list));
+        channels.add(bootstrap.bind(new LocalAddress(options.localAddress())).sync().channel());
+        log.info("start listen in local address {}", options.localAddress());
+    }
+
+    /**
+     * close the listening channels, the server started by {@link #start()} returns then
+     */
+    public void stop() {
+        for (Channel channel : channels) {
+            channel.close().syncUninterruptibly();
+        }
+        shutdown();
+    }
+
+    private void shutdown() {
+        if (boss != null) {
             boss.shutdownGracefully();
             worker.shutdownGracefully();
         }
+        WorkerPool.shutdown();
+    }
+
+    private boolean useEpoll() {
+        if (!options.epoll()) {
+            if (options.listeners() > 1) {
+                log.warn("SO_REUSEPORT needs the epoll transport, use 1 listener");
+            }
+            return false;
+        }
+        if (!Epoll.isAvailable()) {
+            log.warn("epoll is not available, use nio: {}", Epoll.unavailabilityCause().toString());
+            return false;
+        }
+        return true;
     }
 
     public void setList(List<Route> list) {
         this.list = list;
     }
+
+    public ServerOptions options() {
+        return options;
+    }
+
+    public void setOptions(ServerOptions options) {
+        this.options = options;
+    }
 }
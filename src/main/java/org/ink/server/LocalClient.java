@@ -0,0 +1,143 @@
+package org.ink.server;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.Closeable;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * the client of a server bound with the local transport in this jvm,
+ * the requests are encoded, decoded and routed like the ones from a socket
+ * <pre>
+ * InkServer server = new InkServer("ink");
+ * server.bind();
+ * try (LocalClient client = new LocalClient("ink")) {
+ *     FullHttpResponse response = client.get("/index").join();
+ *     ...
+ *     response.release();
+ * }
+ * </pre>
+ *
+ * one client is one connection, the requests sent before the responses come back are pipelined.
+ * the responses are kept until the caller releases them
+ *
+ * @author zhuyichen
+ * @see InkServer#InkServer(String)
+ */
+public final class LocalClient implements Closeable {
+
+    private static final int MAX_CONTENT_LENGTH = 64 * 1024 * 1024;
+
+    private final EventLoopGroup group;
+    private final Channel channel;
+
+    //the futures of the requests on the wire, in the order of the requests, only touched in the event loop
+    private final Queue<CompletableFuture<FullHttpResponse>> pending = new ArrayDeque<>();
+
+    public LocalClient(String localAddress) throws InterruptedException {
+        group = new DefaultEventLoopGroup(1);
+        try {
+            channel = new Bootstrap()
+                    .group(group)
+                    .channel(LocalChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(
+                                    new HttpClientCodec(),
+                                    new HttpObjectAggregator(MAX_CONTENT_LENGTH),
+                                    new ResponseHandler());
+                        }
+                    })
+                    .connect(new LocalAddress(localAddress)).sync().channel();
+        } catch (Exception e) {
+            group.shutdownGracefully();
+            throw e;
+        }
+    }
+
+    /**
+     * GET the uri
+     */
+    public CompletableFuture<FullHttpResponse> get(String uri) {
+        return send(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri));
+    }
+
+    /**
+     * send the request, the request is released after it is written
+     *
+     * @return completed with the response, or with ClosedChannelException if the channel is closed
+     */
+    public CompletableFuture<FullHttpResponse> send(FullHttpRequest request) {
+        if (!request.headers().contains(HttpHeaderNames.HOST)) {
+            request.headers().set(HttpHeaderNames.HOST, "localhost");
+        }
+        CompletableFuture<FullHttpResponse> future = new CompletableFuture<>();
+        channel.eventLoop().execute(() -> {
+            if (!channel.isActive()) {
+                ReferenceCountUtil.release(request);
+                future.completeExceptionally(new ClosedChannelException());
+                return;
+            }
+            pending.add(future);
+            channel.writeAndFlush(request);
+        });
+        return future;
+    }
+
+    @Override
+    public void close() {
+        channel.close().syncUninterruptibly();
+        group.shutdownGracefully();
+    }
+
+    private class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        ResponseHandler() {
+            //the response goes to the caller
+            super(false);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+            CompletableFuture<FullHttpResponse> future = pending.poll();
+            if (future == null || !future.complete(msg)) {
+                msg.release();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            CompletableFuture<FullHttpResponse> future;
+            while ((future = pending.poll()) != null) {
+                future.completeExceptionally(new ClosedChannelException());
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.ink.server;
+
+import org.ink.WebConfig;
+
+/**
+ * the options of the listening sockets
+ *
+ * <p>config and their name</p>
+ * <ul>
+ *     <li>transport     nio, epoll or local, default is nio,
+ *                       epoll falls back to nio if the native library can not be loaded,
+ *                       local binds no socket but the LocalChannel of netty, see {@link LocalClient}</li>
+ *     <li>local_address the name bound by the local transport, default is ink</li>
+ *     <li>listeners     the count of the sockets bound to the port with SO_REUSEPORT,
+ *                       each one accepts on its own thread, default is 1, only for epoll</li>
+ *     <li>tcp_nodelay   default is true</li>
+ *     <li>tcp_fastopen  the queue length of TCP_FASTOPEN, default is 0 for off, only for epoll</li>
+ *     <li>backlog       the accept queue, default is the one of the system</li>
+ *     <li>epoll_mode    edge or level, default is edge</li>
+ * </ul>
+ *
+ * @author zhuyichen
+ * @see org.ink.server.InkServer
+ */
+public class ServerOptions {
+
+    private boolean epoll = false;
+
+    //the name of the LocalAddress, null for the sockets
+    private String localAddress;
+
+    private int listeners = 1;
+
+    private boolean tcpNoDelay = true;
+
+    private int tcpFastOpen = 0;
+
+    private int backlog = 0;
+
+    private boolean edgeTriggered = true;
+
+    /**
+     * the options set in the config file
+     */
+    public static ServerOptions fromConfig() {
+        ServerOptions options = new ServerOptions();
+        String transport = WebConfig.getConfig("transport");
+        options.setEpoll("epoll".equalsIgnoreCase(transport));
+        if ("local".equalsIgnoreCase(transport)) {
+            String name = WebConfig.getConfig("local_address");
+            options.setLocalAddress(name == null ? "ink" : name);
+        }
+        options.setListeners(WebConfig.getIntConfig("listeners", 1));
+        options.setTcpNoDelay(!"false".equalsIgnoreCase(WebConfig.getConfig("tcp_nodelay")));
+        options.setTcpFastOpen(WebConfig.getIntConfig("tcp_fastopen", 0));
+        options.setBacklog(WebConfig.getIntConfig("backlog", 0));
+        options.setEdgeTriggered(!"level".equalsIgnoreCase(WebConfig.getConfig("epoll_mode")));
+        return options;
+    }
+
+    public boolean epoll() {
+        return epoll;
+    }
+
+    public void setEpoll(boolean epoll) {
+        this.epoll = epoll;
+    }
+
+    public String localAddress() {
+        return localAddress;
+    }
+
+    /**
+     * bind the name in this jvm instead of a port, null to bind the port
+     */
+    public void setLocalAddress(String localAddress) {
+        this.localAddress = localAddress;
+    }
+
+    public int listeners() {
+        return listeners;
+    }
+
+    public void setListeners(int listeners) {
+        this.listeners = Math.max(1, listeners);
+    }
+
+    public boolean tcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int tcpFastOpen() {
+        return tcpFastOpen;
+    }
+
+    public void setTcpFastOpen(int tcpFastOpen) {
+        this.tcpFastOpen = tcpFastOpen;
+    }
+
+    public int backlog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public boolean edgeTriggered() {
+        return edgeTriggered;
+    }
+
+    public void setEdgeTriggered(boolean edgeTriggered) {
+        this.edgeTriggered = edgeTriggered;
+    }
+}
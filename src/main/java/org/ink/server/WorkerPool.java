@@ -0,0 +1,82 @@
+package org.ink.server;
+
+import org.ink.WebConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the bounded pool for the blocking routes
+ *
+ * <p>config and their name</p>
+ * <ul>
+ *     <li>worker_pool_size   the count of the threads, default is 8 * cores</li>
+ *     <li>worker_pool_queue  the count of the waiting tasks, default is 1024,
+ *                            the request is answered with 503 when it is full</li>
+ * </ul>
+ *
+ * @author zhuyichen
+ * @see org.ink.web.annotation.Blocking
+ */
+public final class WorkerPool {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkerPool.class);
+
+    private static volatile ThreadPoolExecutor executor;
+
+    private WorkerPool() {
+    }
+
+    private static ThreadPoolExecutor executor() {
+        if (executor == null) {
+            synchronized (WorkerPool.class) {
+                if (executor == null) {
+                    int size = WebConfig.getIntConfig("worker_pool_size", Runtime.getRuntime().availableProcessors() * 8);
+                    int queue = WebConfig.getIntConfig("worker_pool_queue", 1024);
+                    executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queue), new WorkerThreadFactory());
+                    executor.allowCoreThreadTimeOut(true);
+                    log.info("start worker pool with {} threads, {} waiting tasks", size, queue);
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public static void execute(Runnable task) {
+        executor().execute(task);
+    }
+
+    /**
+     * stop the pool, the tasks running and waiting still finish,
+     * the next server in this jvm starts a new one
+     */
+    public static void shutdown() {
+        synchronized (WorkerPool.class) {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ink-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,21 +1,20 @@
 package org.ink.server.netty;
 
 
-import io.netty.util.concurrent.Promise;
 import org.ink.web.route.Route;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
 
 import java.util.List;
 
 /**
+ * the pipeline of the sockets and of the local channels
+ *
  * @author zhuyichen
  */
-public class HttpChannelInitializer extends ChannelInitializer<SocketChannel> {
+public class HttpChannelInitializer extends ChannelInitializer<Channel> {
     private List<Route> list;
 
     public HttpChannelInitializer(List<Route> list) {
@@ -24,11 +23,10 @@ public class HttpChannelInitializer extends ChannelInitializer<SocketChannel> {
 
 
     @Override
-    protected void initChannel(SocketChannel socketChannel) throws Exception {
-        socketChannel.pipeline().addLast(
+    protected void initChannel(Channel channel) throws Exception {
+        channel.pipeline().addLast(
                 new HttpServerCodec(),
-                new HttpServerExpectContinueHandler(),
-                new HttpObjectAggregator(Integer.MAX_VALUE),
+                new RouteAggregator(),
                 new ChunkedWriteHandler(),
                 new HttpRequestHandler()
         );
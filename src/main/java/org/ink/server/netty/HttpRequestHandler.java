@@ -1,6 +1,7 @@
 package org.ink.server.netty;
 
-import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.FullHttpRequest;
@@ -10,27 +11,58 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.stream.ChunkedFile;
 import org.ink.security.exception.ForbiddenException;
 import org.ink.security.exception.UnauthorizedException;
+import org.ink.server.WorkerPool;
 import org.ink.web.WebContext;
+import org.ink.web.http.ErrorResponses;
 import org.ink.web.http.HttpHeader;
 import org.ink.web.http.Request;
 import org.ink.web.http.Response;
+import org.ink.web.http.RoutedHttpRequest;
+import org.ink.web.metrics.PhaseTimer;
+import org.ink.web.metrics.PhaseTimer.Phase;
+import org.ink.web.route.Invocation;
 import org.ink.web.route.Route;
 import org.ink.web.route.RouteFinder;
 import org.ink.web.route.RouteSetter;
 import org.ink.web.view.FreeMarkerResolver;
+import org.ink.web.view.TemplateResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * the handling process of the request
  *
+ * routes marked {@code @Blocking} run on the {@link WorkerPool},
+ * routes returning {@code CompletionStage} give the event loop back at once
+ * and the response is built when the stage completes.
+ * in both cases the response is written back on the event loop of the channel,
+ * and the next requests of the same channel wait here,
+ * so the responses keep the order of the requests
+ *
  * @author zhuyichen  2017/7/11.
  */
 public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 
     private final Logger log = LoggerFactory.getLogger(HttpRequestHandler.class);
 
-    private FreeMarkerResolver resolver = new FreeMarkerResolver();
+    private static final TemplateResolver resolver = FreeMarkerResolver.getInstance();
+
+    //requests arrived while one request is running out of the event loop
+    private final Queue<FullHttpRequest> waiting = new ArrayDeque<>();
+
+    //one request of this channel is running out of the event loop
+    private boolean running;
+
+    //the before aop chain returns false
+    private static final Object STOPPED = new Object();
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
@@ -45,6 +77,18 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
             return;
         }
 
+        if (running) {
+            waiting.add(fullHttpRequest.retain());
+            return;
+        }
+
+        handle(channelHandlerContext, fullHttpRequest);
+    }
+
+    private void handle(ChannelHandlerContext channelHandlerContext, FullHttpRequest fullHttpRequest) {
+
+        PhaseTimer timer = PhaseTimer.start();
+
         log.info("Request [{}]", fullHttpRequest.uri());
 
 
@@ -55,54 +99,257 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
         Response preparedResponse = new Response(request);
         WebContext.setCurrentResponse(preparedResponse);
 
+        RoutedHttpRequest routed = fullHttpRequest instanceof RoutedHttpRequest
+                ? (RoutedHttpRequest) fullHttpRequest : null;
+        if (routed != null && routed.rejected() != null) {
+            //the body is not read, the connection can not be used any more
+            channelHandlerContext.writeAndFlush(ErrorResponses.of(routed.rejected()))
+                    .addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
 
-        Route route = null;
-        try {
-            route = RouteFinder.findRoute(request);
-            if (route == null) {
-                HttpResponse exceptionResponse = Response.buildDefaultFullHttpResponse(HttpResponseStatus.NOT_FOUND);
-                channelHandlerContext.write(exceptionResponse);
-                return;
-            }
-            RouteSetter.routeSetter(route, fullHttpRequest);
-        } catch (Exception e) {
-            handleException(channelHandlerContext, e);
+
+        //found by the RouteAggregator already
+        Route route = routed != null ? routed.route() : RouteFinder.findRoute(request.method(), request.uri());
+        if (route == null) {
+            HttpResponse exceptionResponse = ErrorResponses.of(HttpResponseStatus.NOT_FOUND);
+            channelHandlerContext.write(exceptionResponse);
             return;
         }
 
-        Boolean continueProcess = true;
-        //before aop
-        if (route.beforeProxyChain().size() != 0) {
-            continueProcess = route.beforeProxyChain().doChain(request, preparedResponse, route);
+        Invocation invocation = Invocation.newInstance(route, request, preparedResponse);
+        invocation.setStartTime(route.metrics().start());
+        invocation.setTimer(timer);
+        PhaseTimer.mark(timer, Phase.ROUTE);
+
+        if (route.blocking()) {
+            dispatch(channelHandlerContext, invocation, fullHttpRequest);
+            return;
         }
 
-        if (continueProcess) {
-            Object o = route.getMethod().invoke(route.getObject(), route.getParamters());
-            //after aop
-            if (route.afterProxyChain().size() != 0) {
-                route.afterProxyChain().doChain(request, preparedResponse, route);
-            }
+        run(channelHandlerContext, invocation, fullHttpRequest, false);
+    }
+
+    /**
+     * run the invocation on the worker pool
+     * the WebContext is carried to the worker thread
+     */
+    private void dispatch(ChannelHandlerContext ctx, Invocation invocation, FullHttpRequest fullHttpRequest) {
+        suspend(ctx, fullHttpRequest);
+        WebContext.Snapshot snapshot = WebContext.capture();
+        try {
+            WorkerPool.execute(() -> {
+                WebContext.restore(snapshot);
+                PhaseTimer.mark(invocation.timer(), Phase.QUEUE);
+                try {
+                    run(ctx, invocation, fullHttpRequest, true);
+                } finally {
+                    WebContext.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("worker pool is full, reject [{}]", fullHttpRequest.uri());
+            finish(ctx, invocation, fullHttpRequest,
+                    ErrorResponses.of(HttpResponseStatus.SERVICE_UNAVAILABLE), null, true);
+        }
+    }
+
+    /**
+     * run the route, if it returns a {@code CompletionStage},
+     * the response is written when the stage completes
+     *
+     * @param detached the request is running out of {@link #handle},
+     *                 the response must be written back on the event loop
+     */
+    private void run(ChannelHandlerContext ctx, Invocation invocation, FullHttpRequest fullHttpRequest, boolean detached) {
+        Object result;
+        try {
+            result = invoke(invocation, fullHttpRequest);
+        } catch (Throwable e) {
+            //an Error of a route on the worker pool must still resume the channel
+            finish(ctx, invocation, fullHttpRequest, exceptionResponse(e), null, detached);
+            return;
+        }
 
-            if (o instanceof Response) {
-                preparedResponse = Response.mergeResponse(preparedResponse, (Response) o);
-                WebContext.setCurrentResponse(preparedResponse);
+        if (result instanceof CompletionStage) {
+            if (!detached) {
+                suspend(ctx, fullHttpRequest);
             }
-            else if (route.view()) {
-                preparedResponse.setFile(resolver.resolve(o.toString(), preparedResponse.getModel()));
-                preparedResponse.setResponseStatus(HttpResponseStatus.OK);
-                preparedResponse.header(HttpHeader.CONTENT_TYPE, "text/html");
+            WebContext.Snapshot snapshot = WebContext.capture();
+            ((CompletionStage<?>) result).whenComplete((value, error) -> {
+                //the stage may complete on any thread, keep the context of that thread
+                WebContext.Snapshot previous = WebContext.capture();
+                WebContext.restore(snapshot);
+                PhaseTimer.mark(invocation.timer(), Phase.ASYNC);
+                try {
+                    complete(ctx, invocation, fullHttpRequest, value, error, true);
+                } finally {
+                    WebContext.restore(previous);
+                }
+            });
+            return;
+        }
+
+        complete(ctx, invocation, fullHttpRequest, result, null, detached);
+    }
+
+    /**
+     * run the after aop chain and build the response of the result
+     */
+    private void complete(ChannelHandlerContext ctx, Invocation invocation, FullHttpRequest fullHttpRequest,
+                          Object result, Throwable error, boolean detached) {
+        HttpResponse httpResponse;
+        RandomAccessFile file = null;
+        try {
+            if (error != null) {
+                throw unwrap(error);
             }
-            else  {
-                preparedResponse.setBody(o);
-                preparedResponse.setResponseStatus(HttpResponseStatus.OK);
+            Response response = respond(invocation, result, ctx.alloc());
+            PhaseTimer.mark(invocation.timer(), Phase.AFTER);
+            httpResponse = response.buildDefaultFullHttpResponse(ctx.alloc());
+            PhaseTimer.mark(invocation.timer(), Phase.ENCODE);
+            file = response.file();
+        } catch (Throwable e) {
+            //an Error too, or the channel is never resumed and the invocation never recycled
+            httpResponse = exceptionResponse(e);
+        }
+        finish(ctx, invocation, fullHttpRequest, httpResponse, file, detached);
+    }
+
+    /**
+     * record the metrics of the route, recycle the invocation and write the response
+     */
+    private void finish(ChannelHandlerContext ctx, Invocation invocation, FullHttpRequest fullHttpRequest,
+                        HttpResponse response, RandomAccessFile file, boolean detached) {
+        invocation.route().metrics().end(invocation.startTime(), response.status().code() >= 500);
+        PhaseTimer timer = invocation.timer();
+        String method = timer == null ? null : fullHttpRequest.method().name();
+        String uri = timer == null ? null : fullHttpRequest.uri();
+        invocation.recycle();
+        if (!detached) {
+            write(ctx, response, file);
+            endTimer(timer, method, uri);
+            return;
+        }
+        fullHttpRequest.release();
+        ctx.executor().execute(() -> {
+            write(ctx, response, file);
+            endTimer(timer, method, uri);
+            resume(ctx);
+        });
+    }
+
+    private static void endTimer(PhaseTimer timer, String method, String uri) {
+        if (timer != null) {
+            PhaseTimer.mark(timer, Phase.WRITE);
+            timer.end(method, uri);
+        }
+    }
+
+    /**
+     * stop reading the channel until {@link #resume} is called
+     * the request is kept until the response is written
+     */
+    private void suspend(ChannelHandlerContext ctx, FullHttpRequest fullHttpRequest) {
+        running = true;
+        ctx.channel().config().setAutoRead(false);
+        fullHttpRequest.retain();
+    }
+
+    /**
+     * go on with the requests waiting for the one running out of the event loop
+     * called on the event loop
+     */
+    private void resume(ChannelHandlerContext ctx) {
+        running = false;
+        FullHttpRequest next;
+        while (!running && (next = waiting.poll()) != null) {
+            try {
+                handle(ctx, next);
+            } finally {
+                next.release();
             }
-            log.info("Response {{}}", preparedResponse.body());
         }
+        ctx.flush();
+        WebContext.remove();
+        if (!running) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * set the args, run the before aop chain and the route method
+     *
+     * @return the result of the route method, or {@link #STOPPED}
+     */
+    private Object invoke(Invocation invocation, FullHttpRequest fullHttpRequest) throws Exception {
+        Route route = invocation.route();
+
+        RouteSetter.routeSetter(invocation, fullHttpRequest);
+        PhaseTimer.mark(invocation.timer(), Phase.BIND);
+
+        //before aop
+        if (route.beforeProxyChain().size() != 0 && !route.beforeProxyChain().doChain(invocation)) {
+            return STOPPED;
+        }
+        PhaseTimer.mark(invocation.timer(), Phase.BEFORE);
+        Object result = route.invoker().invoke(invocation.args());
+        PhaseTimer.mark(invocation.timer(), Phase.INVOKE);
+        return result;
+    }
+
+    /**
+     * run the after aop chain, set the result into the response
+     *
+     * @return the response to write
+     */
+    private Response respond(Invocation invocation, Object o, ByteBufAllocator alloc) throws Exception {
+        Route route = invocation.route();
+        Response preparedResponse = invocation.response();
+
+        if (o == STOPPED) {
+            return preparedResponse;
+        }
+
+        //after aop
+        if (route.afterProxyChain().size() != 0) {
+            route.afterProxyChain().doChain(invocation);
+        }
+
+        if (o instanceof Response) {
+            preparedResponse = Response.mergeResponse(preparedResponse, (Response) o);
+            WebContext.setCurrentResponse(preparedResponse);
+        }
+        else if (route.view()) {
+            preparedResponse.setContent(resolver.resolve(o.toString(), preparedResponse.getModel(), alloc));
+            preparedResponse.setResponseStatus(HttpResponseStatus.OK);
+            preparedResponse.header(HttpHeader.CONTENT_TYPE, "text/html;charset=utf-8");
+        }
+        else  {
+            preparedResponse.setBody(o);
+            preparedResponse.setResponseStatus(HttpResponseStatus.OK);
+        }
+        log.info("Response {{}}", preparedResponse.body());
+        return preparedResponse;
+    }
 
-        HttpResponse response = Response.buildDefaultFullHttpResponse0();
-        channelHandlerContext.write(response);
-        if (WebContext.currentResponse().file() != null) {
-            channelHandlerContext.write(new HttpChunkedInput(new ChunkedFile(WebContext.currentResponse().file())));
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private void write(ChannelHandlerContext ctx, HttpResponse response, RandomAccessFile file) {
+        ctx.write(response);
+        if (file != null) {
+            try {
+                ctx.write(new HttpChunkedInput(new ChunkedFile(file)));
+            } catch (Exception e) {
+                log.error("can not write file", e);
+                ctx.close();
+            }
         }
     }
 
@@ -115,25 +362,34 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        FullHttpRequest request;
+        while ((request = waiting.poll()) != null) {
+            request.release();
+        }
         ctx.close();
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        ctx.writeAndFlush(Response.buildDefaultFullHttpResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR));
+        ctx.writeAndFlush(ErrorResponses.of(HttpResponseStatus.INTERNAL_SERVER_ERROR));
         cause.printStackTrace();
         WebContext.remove();
     }
 
-    private void handleException(ChannelHandlerContext ctx, Exception e) {
+    /**
+     * 401 and 403 are thrown by the security check before the route, so they are rejected,
+     * the other errors come from the route, they are counted as the errors of the route only
+     */
+    private HttpResponse exceptionResponse(Throwable e) {
         if (e instanceof UnauthorizedException) {
-            ctx.write(Response.buildDefaultFullHttpResponse(HttpResponseStatus.UNAUTHORIZED));
+            return ErrorResponses.of(HttpResponseStatus.UNAUTHORIZED);
         }
         else if (e instanceof ForbiddenException) {
-            ctx.write(Response.buildDefaultFullHttpResponse(HttpResponseStatus.FORBIDDEN));
+            return ErrorResponses.of(HttpResponseStatus.FORBIDDEN);
         }
         else {
-            ctx.write(Response.buildDefaultFullHttpResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR));
+            log.error("error in handling request", e);
+            return ErrorResponses.response(HttpResponseStatus.INTERNAL_SERVER_ERROR);
         }
     }
 }
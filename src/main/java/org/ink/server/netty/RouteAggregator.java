@@ -0,0 +1,259 @@
+package org.ink.server.netty;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.MixedFileUpload;
+import org.ink.web.http.RoutedHttpRequest;
+import org.ink.web.route.Route;
+import org.ink.web.route.RouteFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * find the route by the headers of the request,
+ * then read the body the way the route needs, see {@link Route.BodyMode}
+ *
+ * <ul>
+ *     <li>NONE       the request goes on once the headers arrive, the body is dropped</li>
+ *     <li>AGGREGATE  the body is kept in memory</li>
+ *     <li>MULTIPART  the form or the multipart body is decoded to the disk chunk by chunk</li>
+ *     <li>RAW        the body is kept in memory if small, or written to the disk chunk by chunk</li>
+ * </ul>
+ *
+ * the body longer than the limit of the route gets 413,
+ * then the connection is closed, see {@code max_content_length} and {@code max_stream_length}
+ *
+ * {@code 100 Continue} is sent only when the body is read
+ *
+ * @author zhuyichen
+ * @see org.ink.web.http.RoutedHttpRequest
+ */
+public class RouteAggregator extends ChannelInboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteAggregator.class);
+
+    //the same as HttpObjectAggregator
+    private static final int MAX_COMPONENTS = 1024;
+
+    //the form and the upload files are always put on the disk, so FileUpload.getFile() works
+    private static final HttpDataFactory DISK_FACTORY = new DefaultHttpDataFactory(true);
+
+    private static final FullHttpResponse CONTINUE =
+            new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER);
+
+    //the request being read
+    private HttpRequest head;
+    private Route route;
+    private long limit;
+    private long received;
+
+    //the request already went on, the rest of the body is dropped
+    private boolean dropping;
+
+    //only one of them is used, by the body mode of the route
+    private CompositeByteBuf content;
+    private InterfaceHttpPostRequestDecoder decoder;
+    private FileUpload rawBody;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof HttpRequest) && !(msg instanceof HttpContent)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (msg instanceof HttpRequest) {
+            start(ctx, (HttpRequest) msg);
+        }
+        if (msg instanceof HttpContent) {
+            HttpContent chunk = (HttpContent) msg;
+            try {
+                offer(ctx, chunk);
+            } finally {
+                chunk.release();
+            }
+        }
+    }
+
+    private void start(ChannelHandlerContext ctx, HttpRequest request) {
+        reset();
+        head = request;
+
+        if (request.decoderResult().isFailure()) {
+            reject(ctx, HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+
+        route = RouteFinder.findRoute(request.method(), request.uri());
+        Route.BodyMode mode = route == null ? Route.BodyMode.NONE : route.bodyMode();
+        limit = route == null ? Long.MAX_VALUE : route.maxContentLength();
+
+        if (HttpUtil.getContentLength(request, -1L) > limit) {
+            reject(ctx, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+
+        if (mode == Route.BodyMode.MULTIPART && !isForm(request)) {
+            //nothing can be decoded from the body
+            mode = Route.BodyMode.NONE;
+        }
+
+        //the client waits for 100 only if the body is going to be read,
+        //the routes without the body and the unknown paths are answered at once
+        if (mode != Route.BodyMode.NONE && HttpUtil.is100ContinueExpected(request)) {
+            ctx.writeAndFlush(CONTINUE.retainedDuplicate());
+            request.headers().remove(HttpHeaderNames.EXPECT);
+        }
+
+        switch (mode) {
+            case AGGREGATE:
+                content = ctx.alloc().compositeBuffer(MAX_COMPONENTS);
+                break;
+            case MULTIPART:
+                try {
+                    decoder = new HttpPostRequestDecoder(DISK_FACTORY, request);
+                } catch (HttpPostRequestDecoder.ErrorDataDecoderException e) {
+                    log.warn("can not decode the body of [{}]: {}", request.uri(), e.getMessage());
+                    reject(ctx, HttpResponseStatus.BAD_REQUEST);
+                }
+                break;
+            case RAW:
+                String contentType = request.headers().get(HttpHeaderNames.CONTENT_TYPE);
+                rawBody = new MixedFileUpload("body", "body",
+                        contentType == null ? "application/octet-stream" : contentType,
+                        null, null, Math.max(0, HttpUtil.getContentLength(request, 0L)), DefaultHttpDataFactory.MINSIZE);
+                break;
+            default:
+                dropping = true;
+                ctx.fireChannelRead(new RoutedHttpRequest(request, Unpooled.EMPTY_BUFFER, route, null));
+        }
+    }
+
+    private void offer(ChannelHandlerContext ctx, HttpContent chunk) {
+        if (head == null) {
+            return;
+        }
+        boolean last = chunk instanceof LastHttpContent;
+
+        if (!dropping) {
+            received += chunk.content().readableBytes();
+            if (received > limit) {
+                reject(ctx, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+            }
+            else {
+                try {
+                    if (content != null) {
+                        content.addComponent(true, chunk.content().retain());
+                    }
+                    else if (decoder != null) {
+                        //the decoder copies the chunk
+                        decoder.offer(chunk);
+                    }
+                    else if (rawBody != null) {
+                        rawBody.addContent(chunk.content().retain(), last);
+                    }
+                } catch (HttpPostRequestDecoder.ErrorDataDecoderException | IOException e) {
+                    log.warn("can not decode the body of [{}]: {}", head.uri(), e.getMessage());
+                    reject(ctx, HttpResponseStatus.BAD_REQUEST);
+                }
+            }
+        }
+
+        if (last) {
+            if (!dropping) {
+                ctx.fireChannelRead(complete());
+            }
+            reset();
+        }
+    }
+
+    /**
+     * the request with the body read so far,
+     * the body is owned by the request after this
+     */
+    private RoutedHttpRequest complete() {
+        RoutedHttpRequest request;
+        if (decoder != null) {
+            request = new RoutedHttpRequest(head, route, decoder);
+        }
+        else if (rawBody != null) {
+            request = new RoutedHttpRequest(head, route, rawBody);
+        }
+        else {
+            request = new RoutedHttpRequest(head, content, route, null);
+        }
+        content = null;
+        decoder = null;
+        rawBody = null;
+        return request;
+    }
+
+    /**
+     * drop the body and let the handler answer the status
+     */
+    private void reject(ChannelHandlerContext ctx, HttpResponseStatus status) {
+        releaseBody();
+        dropping = true;
+        ctx.fireChannelRead(new RoutedHttpRequest(head, Unpooled.EMPTY_BUFFER, route, status));
+    }
+
+    private void reset() {
+        releaseBody();
+        head = null;
+        route = null;
+        limit = 0;
+        received = 0;
+        dropping = false;
+    }
+
+    private void releaseBody() {
+        if (content != null) {
+            content.release();
+            content = null;
+        }
+        if (decoder != null) {
+            decoder.destroy();
+            decoder = null;
+        }
+        if (rawBody != null) {
+            rawBody.delete();
+            rawBody = null;
+        }
+    }
+
+    //no content type is decoded as a form, like the browsers do
+    private static boolean isForm(HttpRequest request) {
+        String contentType = request.headers().get(HttpHeaderNames.CONTENT_TYPE);
+        return contentType == null
+                || contentType.startsWith("multipart/form-data")
+                || contentType.startsWith("application/x-www-form-urlencoded");
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        reset();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        reset();
+    }
+}
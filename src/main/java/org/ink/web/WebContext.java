@@ -3,6 +3,7 @@ package org.ink.web;
 import org.ink.web.http.HttpSession;
 import org.ink.web.http.Request;
 import org.ink.web.http.Response;
+import org.ink.web.http.SessionManager;
 
 /**
  * the methods for current context
@@ -25,10 +26,31 @@ public final class WebContext {
     }
 
     /**
-     * get current session context
-     * @return current session context
+     * get current session context,
+     * the session is created here if the request has none,
+     * and its cookie is added to current response
+     * @return current session context, null if not in a request
      */
     public static HttpSession currentSession() {
+        HttpSession session = SESSION.get();
+        if (session == null) {
+            Request request = REQUEST.get();
+            Response response = RESPONSE.get();
+            if (request == null || response == null) {
+                return null;
+            }
+            session = SessionManager.createSession(request.channel());
+            response.addCookie(SessionManager.SESSION_COOKIE, session.sessionId());
+            SESSION.set(session);
+        }
+        return session;
+    }
+
+    /**
+     * get current session context, never create one
+     * @return null if the request has no session
+     */
+    public static HttpSession existingSession() {
         return SESSION.get();
     }
 
@@ -53,6 +75,23 @@ public final class WebContext {
     public static Request currentRequest() {
         return REQUEST.get();
     }
+    /**
+     * take the context of current thread,
+     * to carry it to the thread which goes on with the request
+     */
+    public static Snapshot capture() {
+        return new Snapshot(SESSION.get(), REQUEST.get(), RESPONSE.get());
+    }
+
+    /**
+     * set the context taken by {@link #capture()} to current thread
+     */
+    public static void restore(Snapshot snapshot) {
+        SESSION.set(snapshot.session);
+        REQUEST.set(snapshot.request);
+        RESPONSE.set(snapshot.response);
+    }
+
     /**
      * remove current session
      */
@@ -62,4 +101,19 @@ public final class WebContext {
         RESPONSE.remove();
     }
 
+    /**
+     * the context of one request
+     */
+    public static final class Snapshot {
+        private final HttpSession session;
+        private final Request request;
+        private final Response response;
+
+        private Snapshot(HttpSession session, Request request, Response response) {
+            this.session = session;
+            this.request = request;
+            this.response = response;
+        }
+    }
+
 }
@@ -0,0 +1,22 @@
+package org.ink.web.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * mark the method or the controller is blocking,
+ * like calling the database, so it runs on the worker pool
+ * instead of the netty event loop
+ *
+ * {@code @Blocking(false)} keeps the method on the event loop
+ * when {@code execution_mode = worker} is set in the config file
+ *
+ * @see org.ink.server.WorkerPool
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Blocking {
+    boolean value() default true;
+}
@@ -0,0 +1,20 @@
+package org.ink.web.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * the max length in bytes of the request body of the method or the controller,
+ * the request gets 413 if the body is longer
+ *
+ * without it, the body read into memory is limited by
+ * {@code max_content_length} in the config file,
+ * and the body streamed to the disk by {@code max_stream_length}
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ContentLimit {
+    long value();
+}
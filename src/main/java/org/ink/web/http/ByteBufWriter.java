@@ -0,0 +1,107 @@
+package org.ink.web.http;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.Writer;
+
+/**
+ * encode the chars into the buffer as utf-8
+ *
+ * fastjson writes into its thread local char[] and flushes it here when full,
+ * freemarker writes the strings of the template here,
+ * so no String or byte[] is made for the output
+ *
+ * @author zhuyichen
+ */
+public final class ByteBufWriter extends Writer {
+
+    private final ByteBuf buf;
+
+    //the high surrogate at the end of the last write
+    private char high;
+
+    public ByteBufWriter(ByteBuf buf) {
+        this.buf = buf;
+    }
+
+    @Override
+    public void write(int c) {
+        //4 bytes at most for one surrogate pair
+        buf.ensureWritable(4);
+        buf.writerIndex(put(buf.writerIndex(), (char) c));
+    }
+
+    @Override
+    public void write(char[] chars, int off, int len) {
+        //3 bytes at most for one char, one more for the high surrogate of the last write
+        buf.ensureWritable(len * 3 + 1);
+        int index = buf.writerIndex();
+        for (int i = off, end = off + len; i < end; i++) {
+            index = put(index, chars[i]);
+        }
+        buf.writerIndex(index);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        buf.ensureWritable(len * 3 + 1);
+        int index = buf.writerIndex();
+        for (int i = off, end = off + len; i < end; i++) {
+            index = put(index, str.charAt(i));
+        }
+        buf.writerIndex(index);
+    }
+
+    /**
+     * put one char at the index, the space is ensured by the caller
+     *
+     * @return the index after the char
+     */
+    private int put(int index, char c) {
+        if (high != 0) {
+            char h = high;
+            high = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(h, c);
+                buf.setByte(index++, 0xf0 | (codePoint >> 18));
+                buf.setByte(index++, 0x80 | ((codePoint >> 12) & 0x3f));
+                buf.setByte(index++, 0x80 | ((codePoint >> 6) & 0x3f));
+                buf.setByte(index++, 0x80 | (codePoint & 0x3f));
+                return index;
+            }
+            //the high surrogate alone
+            buf.setByte(index++, '?');
+        }
+        if (c < 0x80) {
+            buf.setByte(index++, c);
+        }
+        else if (c < 0x800) {
+            buf.setByte(index++, 0xc0 | (c >> 6));
+            buf.setByte(index++, 0x80 | (c & 0x3f));
+        }
+        else if (Character.isHighSurrogate(c)) {
+            high = c;
+        }
+        else if (Character.isLowSurrogate(c)) {
+            buf.setByte(index++, '?');
+        }
+        else {
+            buf.setByte(index++, 0xe0 | (c >> 12));
+            buf.setByte(index++, 0x80 | ((c >> 6) & 0x3f));
+            buf.setByte(index++, 0x80 | (c & 0x3f));
+        }
+        return index;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        if (high != 0) {
+            buf.writeByte('?');
+            high = 0;
+        }
+    }
+}
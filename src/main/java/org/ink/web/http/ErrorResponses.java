@@ -0,0 +1,242 @@
+package org.ink.web.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AsciiString;
+import org.ink.web.WebContext;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the responses of the rejected requests, like 401, 403, 404 and 500
+ *
+ * the headers of every status are made once and shared by all the responses,
+ * the names and values are {@code AsciiString}, so the encoder copies the bytes as they are.
+ * the shared headers are read only, a change throws {@code UnsupportedOperationException}
+ * instead of going into the responses of the other requests.
+ * if the current response has cookies or headers, the response is built by
+ * {@link Response#buildDefaultFullHttpResponse(HttpResponseStatus)} as before
+ *
+ * the count of the rejected requests of every status is kept,
+ * the requests answered after the route ran are not rejected, see {@link #response(HttpResponseStatus)}
+ *
+ * @author zhuyichen
+ */
+public final class ErrorResponses {
+
+    private static final AsciiString CONTENT_LENGTH = AsciiString.of(HttpHeader.CONTENT_LENGTH);
+    private static final AsciiString SERVER = AsciiString.of(HttpHeader.SERVER);
+    private static final AsciiString ZERO = AsciiString.of("0");
+    private static final AsciiString INK = AsciiString.of("Ink");
+
+    private static final HttpResponseStatus[] STATUSES = {
+            HttpResponseStatus.BAD_REQUEST,
+            HttpResponseStatus.UNAUTHORIZED,
+            HttpResponseStatus.FORBIDDEN,
+            HttpResponseStatus.NOT_FOUND,
+            HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE,
+            HttpResponseStatus.EXPECTATION_FAILED,
+            HttpResponseStatus.INTERNAL_SERVER_ERROR,
+            HttpResponseStatus.SERVICE_UNAVAILABLE
+    };
+
+    private static final HttpHeaders[] HEADERS = new HttpHeaders[STATUSES.length];
+
+    private static final LongAdder[] COUNTS = new LongAdder[STATUSES.length];
+
+    //the statuses not in the list
+    private static final LongAdder others = new LongAdder();
+
+    static {
+        for (int i = 0; i < STATUSES.length; i++) {
+            HEADERS[i] = new ReadOnlyHeaders();
+            COUNTS[i] = new LongAdder();
+        }
+    }
+
+    private ErrorResponses() {
+    }
+
+    /**
+     * the headers shared by the responses, nothing can be changed after they are made
+     * ReadOnlyHttpHeaders is not there in this version of netty
+     */
+    private static final class ReadOnlyHeaders extends DefaultHttpHeaders {
+
+        ReadOnlyHeaders() {
+            super(false);
+            super.add(CONTENT_LENGTH, ZERO);
+            super.add(SERVER, INK);
+        }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("the headers of the error responses are shared, copy them to change");
+        }
+
+        @Override
+        public HttpHeaders add(HttpHeaders headers) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders set(HttpHeaders headers) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders setAll(HttpHeaders headers) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders add(String name, Object value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders add(CharSequence name, Object value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders add(String name, Iterable<?> values) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders add(CharSequence name, Iterable<?> values) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders addInt(CharSequence name, int value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders addShort(CharSequence name, short value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders set(String name, Object value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders set(CharSequence name, Object value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders set(String name, Iterable<?> values) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders set(CharSequence name, Iterable<?> values) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders setInt(CharSequence name, int value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders setShort(CharSequence name, short value) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders remove(String name) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders remove(CharSequence name) {
+            throw readOnly();
+        }
+
+        @Override
+        public HttpHeaders clear() {
+            throw readOnly();
+        }
+    }
+
+    /**
+     * the response of the status without body, and count it
+     * the headers of the response are shared and read only
+     */
+    public static DefaultFullHttpResponse of(HttpResponseStatus status) {
+        int index = indexOf(status);
+        if (index < 0) {
+            others.increment();
+        }
+        else {
+            COUNTS[index].increment();
+        }
+        return response(status, index);
+    }
+
+    /**
+     * the same response as {@link #of(HttpResponseStatus)}, not counted,
+     * for the requests the route already ran, they are counted by the metrics of the route
+     */
+    public static DefaultFullHttpResponse response(HttpResponseStatus status) {
+        return response(status, indexOf(status));
+    }
+
+    private static DefaultFullHttpResponse response(HttpResponseStatus status, int index) {
+        if (index < 0) {
+            return Response.buildDefaultFullHttpResponse(status);
+        }
+        Response current = WebContext.currentResponse();
+        if (current != null && current.hasHeaders()) {
+            return Response.buildDefaultFullHttpResponse(status);
+        }
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.EMPTY_BUFFER, HEADERS[index], EmptyHttpHeaders.INSTANCE);
+    }
+
+    /**
+     * @return the count of the requests rejected with the status
+     */
+    public static long rejected(HttpResponseStatus status) {
+        int index = indexOf(status);
+        return index < 0 ? 0 : COUNTS[index].sum();
+    }
+
+    /**
+     * @return the count of all the rejected requests
+     */
+    public static long rejected() {
+        long sum = others.sum();
+        for (LongAdder count : COUNTS) {
+            sum += count.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the statuses counted one by one
+     */
+    public static HttpResponseStatus[] statuses() {
+        return STATUSES.clone();
+    }
+
+    private static int indexOf(HttpResponseStatus status) {
+        int code = status.code();
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].code() == code) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
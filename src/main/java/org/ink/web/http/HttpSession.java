@@ -3,8 +3,8 @@ package org.ink.web.http;
 import io.netty.channel.Channel;
 import org.ink.security.user.User;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -22,24 +22,29 @@ public class HttpSession {
      * for security
      */
 
-    private User user;
+    private volatile User user;
 
     /**
      * for personal attributes, lazy initialization
+     * the requests of the connections of the same user can use it at the same time
      */
-    private Map<String, Object> attributes;
+    private volatile Map<String, Object> attributes;
 
     private Channel channel;
 
     private long createTime = System.currentTimeMillis();
     private long maxAge = 2*60*60;
 
+    //set by SessionManager when the session is got
+    private volatile long lastAccessTime = createTime;
+
     public HttpSession() {
 
     }
 
     public void setMaxAge(long maxAge) {
         this.maxAge = maxAge;
+        SessionManager.created(this);
     }
 
     public long maxAge() {
@@ -50,7 +55,27 @@ public class HttpSession {
      * judge current session has expires
      */
     public boolean hasExpires() {
-        return createTime + TimeUnit.SECONDS.toMillis(maxAge) <= System.currentTimeMillis();
+        return hasExpires(System.currentTimeMillis());
+    }
+
+    boolean hasExpires(long now) {
+        return createTime + TimeUnit.SECONDS.toMillis(maxAge) <= now;
+    }
+
+    public long createTime() {
+        return createTime;
+    }
+
+    void setCreateTime(long createTime) {
+        this.createTime = createTime;
+    }
+
+    public long lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    void touch(long now) {
+        lastAccessTime = now;
     }
 
     public Channel channel() {
@@ -79,6 +104,7 @@ public class HttpSession {
 
     public void setUser(User user) {
         this.user = user;
+        SessionManager.userChanged(this);
     }
 
 
@@ -86,10 +112,51 @@ public class HttpSession {
      * lazy init attributes
      */
     public void addAttribute(String key, Object value) {
-        if (attributes == null) {
-            attributes = new HashMap<>();
+        attributes().put(key, value);
+        SessionManager.attributeChanged(this, key, value);
+    }
+
+    /**
+     * @return null if not found
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String key) {
+        Map<String, Object> map = attributes;
+        return map == null ? null : (T) map.get(key);
+    }
+
+    public Object removeAttribute(String key) {
+        Map<String, Object> map = attributes;
+        if (map == null) {
+            return null;
+        }
+        Object old = map.remove(key);
+        if (old != null) {
+            SessionManager.attributeRemoved(this, key);
+        }
+        return old;
+    }
+
+    /**
+     * @return null if no attribute is added
+     */
+    Map<String, Object> attributeMap() {
+        return attributes;
+    }
+
+    private Map<String, Object> attributes() {
+        Map<String, Object> map = attributes;
+        if (map == null) {
+            synchronized (this) {
+                map = attributes;
+                if (map == null) {
+                    //few attributes in one session, so small and few bins
+                    map = new ConcurrentHashMap<>(4, 0.75f, 1);
+                    attributes = map;
+                }
+            }
         }
-        attributes.put(key, value);
+        return map;
     }
 
 }
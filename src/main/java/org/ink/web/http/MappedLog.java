@@ -0,0 +1,128 @@
+package org.ink.web.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * a file of records, written and read through the memory mapped buffers
+ *
+ * a record is the int length and then the bytes,
+ * the file is extended by one segment of zeros when the mapped part is full,
+ * so the length 0 is the end of the records.
+ * the length is put after the bytes, a record not finished when the process dies is not read
+ *
+ * @author zhuyichen
+ */
+final class MappedLog implements Closeable {
+
+    //the part of the file mapped at one time when reading
+    private static final int READ_WINDOW = 1 << 30;
+
+    private final FileChannel channel;
+
+    private final int segment;
+
+    private MappedByteBuffer buffer;
+
+    //the position in the file of the mapped part
+    private long base;
+
+    /**
+     * create the file, or clear it if it is there
+     *
+     * @param segment the bytes mapped at one time
+     */
+    MappedLog(Path path, int segment) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segment = segment;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segment);
+    }
+
+    /**
+     * append the remaining bytes of the record
+     */
+    void append(ByteBuffer record) throws IOException {
+        int length = record.remaining();
+        //and 4 zeros for the end
+        if (buffer.remaining() < length + 8) {
+            //the new part starts right here, so the records are always one after another
+            long position = base + buffer.position();
+            MappedByteBuffer next = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(segment, length + 8));
+            buffer.force();
+            buffer = next;
+            base = position;
+        }
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(record);
+        buffer.putInt(start, length);
+    }
+
+    /**
+     * write the mapped parts to the disk
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * the zeros after the last record are cut
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.truncate(base + buffer.position());
+        channel.close();
+    }
+
+    /**
+     * read the records one by one from the start of the file
+     *
+     * @param consumer gets every record, the buffer can not be kept
+     * @return the count of the records, 0 if the file is not there
+     */
+    static long replay(Path path, Consumer<ByteBuffer> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long base = 0;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, READ_WINDOW));
+            while (true) {
+                //remaining - 4 can not overflow, a broken length near Integer.MAX_VALUE is just too long
+                if (buffer.remaining() < 4 || buffer.remaining() - 4 < buffer.getInt(buffer.position())) {
+                    long position = base + buffer.position();
+                    if (base + buffer.limit() >= size || position == base) {
+                        //the end of the file, the last record is not finished,
+                        //or a broken length longer than the window
+                        break;
+                    }
+                    //the record goes over the window, map again from here
+                    base = position;
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(size - base, READ_WINDOW));
+                    continue;
+                }
+                int length = buffer.getInt();
+                if (length <= 0) {
+                    break;
+                }
+                ByteBuffer record = buffer.slice();
+                record.limit(length);
+                consumer.accept(record);
+                buffer.position(buffer.position() + length);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,488 @@
+package org.ink.web.http;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.ink.WebConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * copy the sessions to the other nodes, so a node can go on with the users of a node down
+ *
+ * every node listens on its port and connects to all the peers.
+ * the changes of this node are sent on the connections to the peers,
+ * the changes from the peers come on the connections accepted.
+ * <ul>
+ *     <li>the changes are batched, a frame is sent every interval</li>
+ *     <li>the changes of one session in one interval are coalesced,
+ *         only the whole session at the time of sending is sent, see {@link SessionRecords#SNAPSHOT}</li>
+ *     <li>a node asks every peer for all the sessions once connected, so a new or restarted node
+ *         has the sessions before the server starts, or after the sync timeout</li>
+ * </ul>
+ * the last change sent wins, the changes of the same session on two nodes at the same time are not merged
+ *
+ * a frame is the records after the HMAC of them, with the length before,
+ * the frames with a wrong HMAC are dropped, and the connection is closed.
+ * without {@code session_replication_key} anyone who can connect can change the sessions,
+ * so the replication is off without the key, unless the host is a loopback address
+ *
+ * <p>config and their name</p>
+ * <ul>
+ *     <li>session_replication_port          the port to listen, the replication is off if not set</li>
+ *     <li>session_replication_host          the address to listen, default is 127.0.0.1</li>
+ *     <li>session_replication_peers         the other nodes, like {@code 10.0.0.2:7070,10.0.0.3:7070}</li>
+ *     <li>session_replication_interval      milliseconds between two frames, default is 50</li>
+ *     <li>session_replication_sync_timeout  milliseconds to wait for the peers at the start, default is 3000</li>
+ *     <li>session_replication_key           the key of the HMAC of the frames,
+ *                                           needed unless the host is a loopback address</li>
+ * </ul>
+ *
+ * @author zhuyichen
+ */
+final class ReplicatedSessionStore implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicatedSessionStore.class);
+
+    private static final String PORT = WebConfig.getConfig("session_replication_port");
+
+    private static final String HOST = host();
+
+    private static final String SECRET = WebConfig.getConfig("session_replication_key");
+
+    private static final int MAC_LENGTH = 32;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    //a frame is sent once it is bigger than this
+    private static final int FRAME_SIZE = 1024 * 1024;
+
+    private static final int MAX_FRAME = 64 * 1024 * 1024;
+
+    //the time of the last access is sent again after so long, so the session does not expire on the peers
+    private static final long ACCESS_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final long interval = WebConfig.getLongConfig("session_replication_interval", 50);
+    private final long syncTimeout = WebConfig.getLongConfig("session_replication_sync_timeout", 3000);
+    private final SecretKeySpec key;
+    private final List<Peer> peers = new ArrayList<>();
+
+    private final EventLoopGroup group = new NioEventLoopGroup(1, new DefaultThreadFactory("ink-session-replication", true));
+
+    //the connections to the peers
+    private final Set<Channel> channels = ConcurrentHashMap.newKeySet();
+
+    //sessionid -> true if changed, false if removed
+    private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+
+    //only used in the thread of the group
+    private final SessionRecords.Encoder encoder = new SessionRecords.Encoder();
+
+    private CountDownLatch synced;
+
+    private static final class Peer {
+        final InetSocketAddress address;
+        final AtomicBoolean synced = new AtomicBoolean();
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+    }
+
+    /**
+     * the sessions of the other nodes are put into SessionManager directly
+     */
+    private final SessionRecords.Target target = new SessionRecords.Target() {
+        @Override
+        public HttpSession get(String sessionId) {
+            return SessionManager.peek(sessionId);
+        }
+
+        @Override
+        public HttpSession create(String sessionId, long createTime, long lastAccessTime) {
+            return SessionManager.putIfAbsent(sessionId, createTime, lastAccessTime);
+        }
+
+        @Override
+        public void touch(HttpSession session, long time) {
+            SessionManager.touch(session, time);
+        }
+
+        @Override
+        public void remove(String sessionId) {
+            SessionManager.remove(sessionId);
+        }
+    };
+
+    ReplicatedSessionStore() {
+        key = SECRET == null ? null : new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        if (key == null) {
+            log.warn("session_replication_key is not set, the frames of the session replication are not checked");
+        }
+        String list = WebConfig.getConfig("session_replication_peers");
+        if (list != null) {
+            for (String peer : list.split(",")) {
+                peer = peer.trim();
+                if (!peer.isEmpty()) {
+                    int colon = peer.lastIndexOf(':');
+                    peers.add(new Peer(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1)))));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if the port is not set, or the key is not set and the host is not a loopback address
+     */
+    static boolean enabled() {
+        if (PORT == null) {
+            return false;
+        }
+        if (SECRET == null && !loopback(HOST)) {
+            log.error("session_replication_key is not set and {} is not a loopback address, the session replication is off", HOST);
+            return false;
+        }
+        return true;
+    }
+
+    private static String host() {
+        String host = WebConfig.getConfig("session_replication_host");
+        return host == null ? "127.0.0.1" : host;
+    }
+
+    private static boolean loopback(String host) {
+        try {
+            return InetAddress.getByName(host).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * connect to the peers, and wait for their sessions
+     *
+     * @return always empty, the sessions of the peers are already in SessionManager
+     */
+    @Override
+    public Collection<HttpSession> load() {
+        synced = new CountDownLatch(peers.size());
+        peers.forEach(this::connect);
+        try {
+            if (!synced.await(syncTimeout, TimeUnit.MILLISECONDS)) {
+                log.warn("{} of {} peers are not synced in {} ms", synced.getCount(), peers.size(), syncTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * listen for the peers, and start sending the changes
+     */
+    @Override
+    public void start(Collection<HttpSession> live) {
+        InetSocketAddress address = new InetSocketAddress(HOST, Integer.parseInt(PORT));
+        new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(initializer(null))
+                .bind(address)
+                .syncUninterruptibly();
+        group.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("error in sending the sessions", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("session replication listens on {}, peers {}", address, peers.size());
+    }
+
+    /**
+     * the pipeline of a connection, the peer is null for the connections accepted
+     */
+    ChannelInitializer<Channel> initializer(Peer peer) {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel channel) {
+                channel.pipeline().addLast(
+                        new LengthFieldBasedFrameDecoder(MAX_FRAME, 0, 4, 0, 4),
+                        new LengthFieldPrepender(4),
+                        new ReplicationHandler(peer));
+            }
+        };
+    }
+
+    private void connect(Peer peer) {
+        new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(initializer(peer))
+                .connect(peer.address)
+                .addListener((ChannelFuture future) -> {
+                    if (!future.isSuccess()) {
+                        log.debug("can not connect to {}: {}", peer.address, future.cause().getMessage());
+                        //do not wait for the peer down
+                        synced(peer);
+                        reconnect(peer);
+                        return;
+                    }
+                    Channel channel = future.channel();
+                    channels.add(channel);
+                    channel.closeFuture().addListener(f -> {
+                        channels.remove(channel);
+                        reconnect(peer);
+                    });
+                    ByteBuf frame = newFrame(channel.alloc());
+                    addRecord(frame, encoder().control(SessionRecords.SYNC));
+                    channel.writeAndFlush(seal(frame));
+                    log.info("connected to {}", peer.address);
+                });
+    }
+
+    private void reconnect(Peer peer) {
+        if (!group.isShuttingDown()) {
+            group.schedule(() -> connect(peer), 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private void synced(Peer peer) {
+        if (peer.synced.compareAndSet(false, true)) {
+            synced.countDown();
+        }
+    }
+
+    //the connect listener runs in the group, but load() is not
+    private SessionRecords.Encoder encoder() {
+        return group.next().inEventLoop() ? encoder : new SessionRecords.Encoder();
+    }
+
+    /**
+     * send the sessions changed since the last time
+     */
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (channels.isEmpty()) {
+            //the peers get all the sessions when they are connected
+            pending.clear();
+            return;
+        }
+        ByteBuf frame = newFrame(ByteBufAllocator.DEFAULT);
+        int count = 0;
+        for (String sessionId : pending.keySet()) {
+            Boolean changed = pending.remove(sessionId);
+            if (changed == null) {
+                continue;
+            }
+            HttpSession session = changed ? SessionManager.peek(sessionId) : null;
+            addRecord(frame, session == null ? encoder.remove(sessionId) : encoder.snapshot(session));
+            count++;
+            if (frame.readableBytes() >= FRAME_SIZE) {
+                send(frame);
+                frame = newFrame(ByteBufAllocator.DEFAULT);
+            }
+        }
+        send(frame);
+        log.debug("{} sessions sent", count);
+    }
+
+    private void send(ByteBuf frame) {
+        if (frame.readableBytes() == MAC_LENGTH) {
+            frame.release();
+            return;
+        }
+        seal(frame);
+        for (Channel channel : channels) {
+            channel.writeAndFlush(frame.retainedDuplicate());
+        }
+        frame.release();
+    }
+
+    /**
+     * send all the sessions to the node joined
+     */
+    private void sendAll(Channel channel) {
+        List<HttpSession> live = SessionManager.liveSessionList();
+        ByteBuf frame = newFrame(channel.alloc());
+        for (HttpSession session : live) {
+            addRecord(frame, encoder.snapshot(session));
+            if (frame.readableBytes() >= FRAME_SIZE) {
+                channel.write(seal(frame));
+                frame = newFrame(channel.alloc());
+            }
+        }
+        addRecord(frame, encoder.control(SessionRecords.SYNC_DONE));
+        channel.writeAndFlush(seal(frame));
+        log.info("{} sessions sent to {}", live.size(), channel.remoteAddress());
+    }
+
+    private static ByteBuf newFrame(ByteBufAllocator alloc) {
+        ByteBuf frame = alloc.buffer();
+        frame.writeZero(MAC_LENGTH);
+        return frame;
+    }
+
+    private static void addRecord(ByteBuf frame, ByteBuffer record) {
+        frame.writeInt(record.remaining());
+        frame.writeBytes(record);
+    }
+
+    /**
+     * put the HMAC of the records at the start
+     */
+    private ByteBuf seal(ByteBuf frame) {
+        if (key != null) {
+            frame.setBytes(0, mac(frame));
+        }
+        return frame;
+    }
+
+    private byte[] mac(ByteBuf frame) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(frame.nioBuffer(MAC_LENGTH, frame.writerIndex() - MAC_LENGTH));
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * read the frames from the peers, and the answers of the sync
+     */
+    private final class ReplicationHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+        //null for the connections accepted
+        private final Peer peer;
+
+        ReplicationHandler(Peer peer) {
+            this.peer = peer;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+            if (frame.readableBytes() < MAC_LENGTH) {
+                ctx.close();
+                return;
+            }
+            if (key != null) {
+                byte[] expected = new byte[MAC_LENGTH];
+                frame.getBytes(frame.readerIndex(), expected);
+                if (!MessageDigest.isEqual(expected, mac(frame.slice(frame.readerIndex(), frame.readableBytes())))) {
+                    log.warn("wrong HMAC of the frame from {}, closed", ctx.channel().remoteAddress());
+                    ctx.close();
+                    return;
+                }
+            }
+            ByteBuffer records = frame.nioBuffer(frame.readerIndex() + MAC_LENGTH, frame.readableBytes() - MAC_LENGTH);
+            SessionRecords.Decoder decoder = new SessionRecords.Decoder(target);
+            SessionManager.applyFrom(ReplicatedSessionStore.this, () -> {
+                while (records.remaining() >= 4) {
+                    int length = records.getInt();
+                    if (length < 0 || length > records.remaining()) {
+                        throw new IllegalArgumentException("broken session record, " + length + " bytes");
+                    }
+                    ByteBuffer record = records.slice();
+                    record.limit(length);
+                    records.position(records.position() + length);
+                    byte type = decoder.apply(record);
+                    if (type == SessionRecords.SYNC) {
+                        sendAll(ctx.channel());
+                    }
+                    else if (type == SessionRecords.SYNC_DONE && peer != null) {
+                        synced(peer);
+                        log.info("synced with {}", peer.address);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("error in the session replication with {}: {}", ctx.channel().remoteAddress(), cause.getMessage());
+            ctx.close();
+        }
+    }
+
+    /*
+     * the changes of this node, sent in the next frame
+     */
+
+    @Override
+    public void created(HttpSession session) {
+        pending.put(session.sessionId(), Boolean.TRUE);
+    }
+
+    @Override
+    public void userChanged(HttpSession session) {
+        pending.put(session.sessionId(), Boolean.TRUE);
+    }
+
+    @Override
+    public void attributeChanged(HttpSession session, String key, Object value) {
+        pending.put(session.sessionId(), Boolean.TRUE);
+    }
+
+    @Override
+    public void attributeRemoved(HttpSession session, String key) {
+        pending.put(session.sessionId(), Boolean.TRUE);
+    }
+
+    @Override
+    public void removed(String sessionId) {
+        pending.put(sessionId, Boolean.FALSE);
+    }
+
+    @Override
+    public void accessed(HttpSession session, long previous) {
+        //once an interval at most for a session used all the time
+        if (session.lastAccessTime() / ACCESS_INTERVAL != previous / ACCESS_INTERVAL) {
+            pending.put(session.sessionId(), Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "session replication on port " + PORT;
+    }
+}
@@ -69,6 +69,13 @@ public class Request {
         return cookies.get(name);
     }
 
+    /**
+     * @return null if not found
+     */
+    public String header(String name) {
+        return fullHttpRequest.headers().get(name);
+    }
+
     public String uri() {
         return fullHttpRequest.uri();
     }
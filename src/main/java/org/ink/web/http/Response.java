@@ -1,11 +1,13 @@
 package org.ink.web.http;
 
 import com.alibaba.fastjson.JSON;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
-import io.netty.buffer.UnpooledDirectByteBuf;
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import io.netty.util.ReferenceCountUtil;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.ink.web.WebContext;
@@ -58,6 +60,20 @@ public class Response {
 
     private Model model;
 
+    /**
+     * the bytes of the body written as they are, like the page of the view
+     * released when the response is written
+     */
+    private ByteBuf content;
+
+    public ByteBuf content() {
+        return content;
+    }
+
+    public void setContent(ByteBuf content) {
+        this.content = content;
+    }
+
     public Model getModel() {
         return model;
     }
@@ -83,25 +99,10 @@ public class Response {
 
     public Response(Request request) {
         if (request.cookies() != null) {
-            String sessionId = request.cookies().getOrDefault("SESSIONID", null);
-            HttpSession session = null;
-            //if sessionid is null or Manager not contains sessionid
-            //then create one new http session
-            if (sessionId == null || !SessionManager.containsSession(sessionId)) {
-                sessionId = SessionManager.createSessionId();
-                SessionManager.addSession(sessionId, request.channel());
-                session = SessionManager.getSession(sessionId);
-                addCookie("SESSIONID", sessionId);
-            } else {
-                session = SessionManager.getSession(sessionId);
-                //if session hasExpired
-                if (session.hasExpires()) {
-                    sessionId = SessionManager.createSessionId();
-                    SessionManager.addSession(sessionId, request.channel());
-                    session = SessionManager.getSession(sessionId);
-                    addCookie("SESSIONID", sessionId);
-                }
-            }
+            String sessionId = request.cookies().get(SessionManager.SESSION_COOKIE);
+            //null if not found or expired,
+            //a new session is only created when WebContext.currentSession() is called
+            HttpSession session = sessionId == null ? null : SessionManager.getSession(sessionId);
             //set to WebContext
             WebContext.setCurrentSession(session);
         }
@@ -118,6 +119,9 @@ public class Response {
     }
 
     public boolean addCookie(Cookie cookie) {
+        if (cookies == null) {
+            cookies = new HashSet<>();
+        }
         return cookies.add(cookie);
     }
 
@@ -292,10 +296,21 @@ public class Response {
     public static Response mergeResponse(Response response1, Response response2) {
         //TODO
         response1.headers.forEach(response2::header);
+        //like the cookie of the session created in the route
+        if (response1.cookies != null) {
+            response1.cookies.forEach(response2::addCookie);
+        }
         return response2;
     }
 
 
+    /**
+     * @return true if any header or cookie is set
+     */
+    boolean hasHeaders() {
+        return cookies != null || !headers.isEmpty();
+    }
+
     /**
      * build response like 404 304 without response body
      */
@@ -320,23 +335,44 @@ public class Response {
 
     /**
      * convert response to DefaultFullHttpResponse
+     * the body is written into a buffer of {@code ByteBufAllocator.DEFAULT}
      */
     public HttpResponse buildDefaultFullHttpResponse() throws IOException {
+        return buildDefaultFullHttpResponse(ByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * convert response to DefaultFullHttpResponse
+     * the json of the body is written straight into one buffer of the allocator
+     * by {@link ByteBufWriter}, no String or byte[] is made for it
+     *
+     * @param alloc the allocator of the channel
+     */
+    public HttpResponse buildDefaultFullHttpResponse(ByteBufAllocator alloc) throws IOException {
         DefaultHttpResponse fullHttpResponse = null;
 
         int length = 0;
         //set body
-        if (this.body() == null && this.file == null) {
+        if (this.content != null) {
+            length = content.readableBytes();
+            fullHttpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, this.responseStatus(), content);
+            content = null;
+        } else if (this.body() == null && this.file == null) {
+            //a full response, so the encoder does not wait for the content
+            fullHttpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, this.responseStatus(), Unpooled.EMPTY_BUFFER);
+        } else if (this.body() == null) {
+            //http file
             fullHttpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, this.responseStatus());
         } else {
-            if (this.body() != null) {
-                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, this.responseStatus(), Unpooled.copiedBuffer(JSON.toJSONString(body()).getBytes()));
-                length = response.content().readableBytes();
-                fullHttpResponse = response;
-            } else {
-                //http file
-                fullHttpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, this.responseStatus());
+            ByteBuf content = alloc.ioBuffer();
+            try (ByteBufWriter writer = new ByteBufWriter(content)) {
+                JSON.writeJSONString(writer, body());
+            } catch (RuntimeException e) {
+                content.release();
+                throw e;
             }
+            length = content.readableBytes();
+            fullHttpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, this.responseStatus(), content);
         }
 
         //set headers
@@ -360,7 +396,12 @@ public class Response {
                     .collect(Collectors.toList()));
         }
         fullHttpResponse.headers().set(HttpHeader.CONNECTION, "keep-alive");
-        fullHttpResponse.headers().set(HttpHeader.CONTENT_LENGTH, length + fileLength());
+        try {
+            fullHttpResponse.headers().set(HttpHeader.CONTENT_LENGTH, length + fileLength());
+        } catch (IOException e) {
+            ReferenceCountUtil.release(fullHttpResponse);
+            throw e;
+        }
         fullHttpResponse.headers().set(HttpHeader.SERVER, "Ink");
         return fullHttpResponse;
     }
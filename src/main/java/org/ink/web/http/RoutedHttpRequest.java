@@ -0,0 +1,107 @@
+package org.ink.web.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.InterfaceHttpPostRequestDecoder;
+import org.ink.web.route.Route;
+
+/**
+ * the request with the route found by the headers
+ *
+ * the body is one of
+ * <ul>
+ *     <li>the content, kept in memory</li>
+ *     <li>the decoder, the form or the multipart body already decoded to the disk</li>
+ *     <li>the raw body, in memory if small, or on the disk</li>
+ * </ul>
+ * the decoder and the raw body are deleted when the request is released
+ * the trailing headers are not kept
+ *
+ * @author zhuyichen
+ * @see org.ink.server.netty.RouteAggregator
+ */
+public class RoutedHttpRequest extends DefaultFullHttpRequest {
+
+    private final Route route;
+
+    private final HttpResponseStatus rejected;
+
+    private InterfaceHttpPostRequestDecoder decoder;
+
+    private FileUpload rawBody;
+
+    /**
+     * the body is the content
+     *
+     * @param route    null if not found
+     * @param rejected the status of the response if the request can not go on, else null
+     */
+    public RoutedHttpRequest(HttpRequest head, ByteBuf content, Route route, HttpResponseStatus rejected) {
+        super(head.protocolVersion(), head.method(), head.uri(), content, head.headers(), EmptyHttpHeaders.INSTANCE);
+        this.route = route;
+        this.rejected = rejected;
+    }
+
+    /**
+     * the body is decoded by the decoder
+     */
+    public RoutedHttpRequest(HttpRequest head, Route route, InterfaceHttpPostRequestDecoder decoder) {
+        //a buffer of its own keeps the refCnt of the request, so the decoder is deleted at the end,
+        //not Unpooled.EMPTY_BUFFER which is never released
+        this(head, Unpooled.buffer(0), route, null);
+        this.decoder = decoder;
+    }
+
+    /**
+     * the body is the raw body
+     */
+    public RoutedHttpRequest(HttpRequest head, Route route, FileUpload rawBody) {
+        this(head, Unpooled.buffer(0), route, null);
+        this.rawBody = rawBody;
+    }
+
+    public Route route() {
+        return route;
+    }
+
+    public HttpResponseStatus rejected() {
+        return rejected;
+    }
+
+    public InterfaceHttpPostRequestDecoder decoder() {
+        return decoder;
+    }
+
+    public FileUpload rawBody() {
+        return rawBody;
+    }
+
+    @Override
+    public boolean release() {
+        return deallocate(super.release());
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return deallocate(super.release(decrement));
+    }
+
+    private boolean deallocate(boolean released) {
+        if (released) {
+            if (decoder != null) {
+                decoder.destroy();
+                decoder = null;
+            }
+            if (rawBody != null) {
+                rawBody.delete();
+                rawBody = null;
+            }
+        }
+        return released;
+    }
+}
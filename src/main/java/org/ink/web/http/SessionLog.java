@@ -0,0 +1,272 @@
+package org.ink.web.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * keep the sessions on the disk, so they are still there after a restart
+ *
+ * the changes of the sessions are appended to {@code <path>.log.<n>}, one log for every shard
+ * of {@link SessionManager} with its own lock, so the shards do not wait for each other.
+ * all the records of a session are in the log of its shard, in order.
+ * the compaction writes all the live sessions to {@code <path>.snapshot} and starts new logs.
+ * at the start, the snapshot and then the logs are read in one pass, see {@link MappedLog}
+ *
+ * a log is moved to {@code <path>.log.<n>.old} while the snapshot is written,
+ * the changes during the compaction go to the new log,
+ * so reading the snapshot, the old logs and the new logs in order always gets the last state
+ *
+ * the time of the last access is logged once a minute at most for a session,
+ * so a session used until the restart is not taken as idle since its last change
+ *
+ * @author zhuyichen
+ * @see SessionRecords
+ */
+final class SessionLog implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionLog.class);
+
+    //about the bytes of one session in the snapshot, to size the map at the start
+    private static final int SESSION_BYTES = 128;
+
+    //the time of the last access is logged again after so long
+    private static final long ACCESS_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String OLD = ".old";
+
+    private final Path snapshotPath;
+    private final Path directory;
+    //the name of the logs before the number
+    private final String logName;
+    private final int segment;
+
+    private final Stripe[] stripes;
+
+    private final Object compactLock = new Object();
+
+    /**
+     * the log of one shard, guarded by itself
+     */
+    private static final class Stripe {
+        final Path path;
+        final Path oldPath;
+        final SessionRecords.Encoder encoder = new SessionRecords.Encoder();
+        MappedLog current;
+
+        Stripe(Path path) {
+            this.path = path;
+            this.oldPath = Paths.get(path + OLD);
+        }
+    }
+
+    SessionLog(String path, int segment) {
+        this(path, segment, SessionManager.shardCount());
+    }
+
+    SessionLog(String path, int segment, int stripeCount) {
+        this.snapshotPath = Paths.get(path + ".snapshot");
+        Path logPath = Paths.get(path + ".log").toAbsolutePath();
+        this.directory = logPath.getParent();
+        this.logName = logPath.getFileName().toString();
+        this.segment = segment;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(directory.resolve(logName + "." + i));
+        }
+    }
+
+    /**
+     * read the snapshot and the logs
+     */
+    @Override
+    public Collection<HttpSession> load() throws IOException {
+        long bytes = Files.exists(snapshotPath) ? Files.size(snapshotPath) : 0;
+        SessionRecords.MapTarget target = new SessionRecords.MapTarget((int) Math.min(bytes / SESSION_BYTES, Integer.MAX_VALUE / 2));
+        SessionRecords.Decoder decoder = new SessionRecords.Decoder(target);
+        long count = replay(snapshotPath, decoder);
+        //the records of a session are in one log, the old one before the new one
+        List<Path> logs = logs();
+        for (Path path : logs) {
+            if (path.toString().endsWith(OLD)) {
+                count += replay(path, decoder);
+            }
+        }
+        for (Path path : logs) {
+            if (!path.toString().endsWith(OLD)) {
+                count += replay(path, decoder);
+            }
+        }
+        log.debug("{} session records read", count);
+        return target.sessions.values();
+    }
+
+    private static long replay(Path path, SessionRecords.Decoder decoder) throws IOException {
+        return MappedLog.replay(path, record -> {
+            try {
+                decoder.apply(record);
+            } catch (RuntimeException e) {
+                //the length of the record is fine, so the next one can still be read
+                log.warn("broken session record in {} is skipped: {}", path, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * all the logs there, also the ones of another count of the shards,
+     * and {@code <path>.log} of the single log before
+     */
+    private List<Path> logs() throws IOException {
+        List<Path> logs = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return logs;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, logName + "*")) {
+            for (Path path : stream) {
+                logs.add(path);
+            }
+        }
+        logs.sort(null);
+        return logs;
+    }
+
+    /**
+     * write the sessions loaded as the snapshot, then start the logs
+     */
+    @Override
+    public void start(Collection<HttpSession> live) throws IOException {
+        synchronized (compactLock) {
+            writeSnapshot(live);
+            for (Path path : logs()) {
+                Files.deleteIfExists(path);
+            }
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.current = new MappedLog(stripe.path, segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * write the live sessions as the snapshot, and drop the logs before
+     *
+     * the live sessions are read after all the logs are moved,
+     * a change logged before the move is already in the memory, so it is in the snapshot,
+     * and a change logged after it is in the new logs
+     */
+    @Override
+    public void compact(Supplier<Collection<HttpSession>> live) throws IOException {
+        synchronized (compactLock) {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.current.close();
+                    Files.move(stripe.path, stripe.oldPath, StandardCopyOption.REPLACE_EXISTING);
+                    stripe.current = new MappedLog(stripe.path, segment);
+                }
+            }
+            Collection<HttpSession> sessions = live.get();
+            writeSnapshot(sessions);
+            log.debug("{} sessions in the snapshot", sessions.size());
+            for (Stripe stripe : stripes) {
+                Files.deleteIfExists(stripe.oldPath);
+            }
+        }
+    }
+
+    private void writeSnapshot(Collection<HttpSession> sessions) throws IOException {
+        Path tmp = Paths.get(snapshotPath + ".tmp");
+        SessionRecords.Encoder snapshot = new SessionRecords.Encoder();
+        try (MappedLog out = new MappedLog(tmp, segment)) {
+            for (HttpSession session : sessions) {
+                out.append(snapshot.snapshot(session));
+            }
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Stripe stripe(String sessionId) {
+        int shard = SessionManager.shardIndex(sessionId);
+        return stripes[Math.floorMod(shard < 0 ? sessionId.hashCode() : shard, stripes.length)];
+    }
+
+    @Override
+    public void created(HttpSession session) {
+        Stripe stripe = stripe(session.sessionId());
+        synchronized (stripe) {
+            append(stripe, stripe.encoder.session(session));
+        }
+    }
+
+    @Override
+    public void userChanged(HttpSession session) {
+        Stripe stripe = stripe(session.sessionId());
+        synchronized (stripe) {
+            append(stripe, stripe.encoder.user(session));
+        }
+    }
+
+    @Override
+    public void attributeChanged(HttpSession session, String key, Object value) {
+        Stripe stripe = stripe(session.sessionId());
+        synchronized (stripe) {
+            ByteBuffer record = stripe.encoder.attribute(session, key, value);
+            if (record != null) {
+                append(stripe, record);
+            }
+        }
+    }
+
+    @Override
+    public void attributeRemoved(HttpSession session, String key) {
+        Stripe stripe = stripe(session.sessionId());
+        synchronized (stripe) {
+            append(stripe, stripe.encoder.removeAttribute(session, key));
+        }
+    }
+
+    @Override
+    public void removed(String sessionId) {
+        Stripe stripe = stripe(sessionId);
+        synchronized (stripe) {
+            append(stripe, stripe.encoder.remove(sessionId));
+        }
+    }
+
+    @Override
+    public void accessed(HttpSession session, long previous) {
+        //once an interval at most for a session used all the time
+        if (session.lastAccessTime() / ACCESS_INTERVAL == previous / ACCESS_INTERVAL) {
+            return;
+        }
+        Stripe stripe = stripe(session.sessionId());
+        synchronized (stripe) {
+            append(stripe, stripe.encoder.access(session));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "session log " + directory.resolve(logName) + ".*";
+    }
+
+    private static void append(Stripe stripe, ByteBuffer record) {
+        try {
+            stripe.current.append(record);
+        } catch (IOException e) {
+            log.error("can not write the session log", e);
+        }
+    }
+}
@@ -1,72 +1,777 @@
 package org.ink.web.http;
 
 import io.netty.channel.Channel;
+import org.ink.WebConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * the sessions, split into shards
+ *
+ * every thread creates its sessions in its own shard, so the event loop of a connection
+ * mostly uses only one shard, and the shards of different loops never share a lock.
+ * the shard is the lock of itself, the request of another loop still gets the session
+ * by the shard encoded in the first two chars of the id
+ *
+ * in a shard the sessions are in the order of the last access,
+ * a session is moved to the tail by {@link #getSession}, and to its place by {@link #touch} when it is used on another node,
+ * the reads of the stores do not move it, the head is the session idle for the longest time,
+ * so the sweeper removes the expired ones from the head
+ * and stops at the first one not expired, O(expired) every time.
+ * when there are too many sessions in a shard, the head is evicted
+ *
+ * <p>config and their name</p>
+ * <ul>
+ *     <li>session_timeout         seconds a session can be idle, default is 2 hours</li>
+ *     <li>session_max_count       the max count of the sessions, default is 1000000</li>
+ *     <li>session_sweep_interval  seconds between two sweeps, default is 60</li>
+ *     <li>session_shards          the count of the shards, rounded up to a power of 2, at most 256,
+ *                                 default is twice the cores, the same as the event loops</li>
+ *     <li>session_store           the path of the files the sessions are kept in, not kept if not set,
+ *                                 see {@link SessionLog}</li>
+ *     <li>session_store_segment   the bytes of the files mapped at one time, default is 64M</li>
+ *     <li>session_compact_interval seconds between two compactions of the log, default is 300</li>
+ *     <li>session_replication_port and the others, the sessions are copied to the other nodes,
+ *                                 see {@link ReplicatedSessionStore}</li>
+ * </ul>
+ *
+ * the changes of the sessions are told to the {@link SessionStore}s
+ *
  * @author zhuyichen 2017-8-15
  */
 public final class SessionManager {
 
-    //sessionid -> httpSession
-    private static Map<String, HttpSession> sessions = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(SessionManager.class);
 
-    private static Map<String, HttpSession> sessions() {
-        return sessions;
+    /**
+     * the name of the cookie of the session id
+     */
+    public static final String SESSION_COOKIE = "SESSIONID";
+
+    static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(
+            WebConfig.getLongConfig("session_timeout", 2 * 60 * 60));
+
+    private static final int MAX_SESSIONS = WebConfig.getIntConfig("session_max_count", 1000000);
+
+    private static final long SWEEP_INTERVAL = WebConfig.getLongConfig("session_sweep_interval", 60);
+
+    //the lock is given up after so many sessions are removed, so the requests are not blocked long
+    private static final int SWEEP_BATCH = 1024;
+
+    private static final String STORE_PATH = WebConfig.getConfig("session_store");
+
+    private static final int STORE_SEGMENT = WebConfig.getIntConfig("session_store_segment", 64 * 1024 * 1024);
+
+    private static final long COMPACT_INTERVAL = WebConfig.getLongConfig("session_compact_interval", 300);
+
+    //the shard is written as two hex chars
+    private static final int MAX_SHARDS = 256;
+
+    private static final LongAdder created = new LongAdder();
+    private static final LongAdder expired = new LongAdder();
+    private static final LongAdder evicted = new LongAdder();
+
+    private static final Shard[] shards;
+
+    private static final ScheduledExecutorService sweeper;
+
+    //the stores added before the start
+    private static final List<SessionStore> added = new ArrayList<>();
+
+    //the stores started, the changes are told to them
+    private static volatile SessionStore[] stores = new SessionStore[0];
+
+    //the store the change being applied comes from, it is not told again
+    private static final ThreadLocal<SessionStore> APPLYING = new ThreadLocal<>();
+
+    static {
+        int count = WebConfig.getIntConfig("session_shards", Runtime.getRuntime().availableProcessors() * 2);
+        count = Math.min(MAX_SHARDS, Math.max(1, count));
+        //round up to a power of 2
+        count = Integer.highestOneBit(count - 1 << 1 | 1);
+        shards = new Shard[count];
+        int max = (MAX_SESSIONS + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(max);
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ink-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                int removed = sweep();
+                if (removed > 0) {
+                    log.debug("{} sessions expired", removed);
+                }
+            } catch (Exception e) {
+                log.error("error in sweeping sessions", e);
+            }
+        }, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    //the shard of the sessions created by current thread
+    private static final AtomicInteger nextShard = new AtomicInteger();
+    private static final ThreadLocal<Integer> SHARD = ThreadLocal.withInitial(() -> nextShard.getAndIncrement() & shards.length - 1);
+
+    /**
+     * sessionid -> httpSession, in the order of the last access, guarded by the shard
+     *
+     * the sessions are linked from the head, idle for the longest time, to the tail, used last.
+     * a session is put at its place by the time of the last access, searched from the tail,
+     * so a session used now is put at the tail at once,
+     * and a session of another node, used a little earlier, is put a few sessions before the tail
+     */
+    private static final class Shard {
+
+        private static final class Node {
+            final HttpSession session;
+            Node prev;
+            Node next;
+
+            Node(HttpSession session) {
+                this.session = session;
+            }
+        }
+
+        private final Map<String, Node> nodes = new HashMap<>(1024);
+
+        private final int maxSize;
+
+        private Node head;
+        private Node tail;
+
+        //the ids evicted under the lock, the stores are told after the lock is given up
+        private List<String> evictedIds;
+
+        Shard(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        HttpSession get(String sessionId) {
+            Node node = nodes.get(sessionId);
+            return node == null ? null : node.session;
+        }
+
+        boolean containsKey(String sessionId) {
+            return nodes.containsKey(sessionId);
+        }
+
+        int size() {
+            return nodes.size();
+        }
+
+        /**
+         * the session idle for the longest time, null if empty
+         */
+        HttpSession first() {
+            return head == null ? null : head.session;
+        }
+
+        /**
+         * @return the session already there, or null if the session is put
+         */
+        HttpSession putIfAbsent(String sessionId, HttpSession session) {
+            Node old = nodes.get(sessionId);
+            if (old != null) {
+                return old.session;
+            }
+            add(sessionId, session);
+            return null;
+        }
+
+        /**
+         * put the session in place of the one there
+         */
+        void put(String sessionId, HttpSession session) {
+            Node old = nodes.remove(sessionId);
+            if (old != null) {
+                unlink(old);
+            }
+            add(sessionId, session);
+        }
+
+        /**
+         * the time of the last access of the session is changed, move it to its place
+         */
+        void touched(String sessionId) {
+            Node node = nodes.get(sessionId);
+            if (node != null) {
+                unlink(node);
+                link(node);
+            }
+        }
+
+        HttpSession remove(String sessionId) {
+            Node node = nodes.remove(sessionId);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            return node.session;
+        }
+
+        void addTo(List<HttpSession> list) {
+            for (Node node = head; node != null; node = node.next) {
+                list.add(node.session);
+            }
+        }
+
+        /**
+         * the ids evicted since the last time, null if none
+         */
+        List<String> takeEvicted() {
+            List<String> ids = evictedIds;
+            evictedIds = null;
+            return ids;
+        }
+
+        private void add(String sessionId, HttpSession session) {
+            Node node = new Node(session);
+            nodes.put(sessionId, node);
+            link(node);
+            if (nodes.size() > maxSize) {
+                String eldest = head.session.sessionId();
+                remove(eldest);
+                evicted.increment();
+                if (evictedIds == null) {
+                    evictedIds = new ArrayList<>(1);
+                }
+                evictedIds.add(eldest);
+            }
+        }
+
+        //after the last one used not later than it
+        private void link(Node node) {
+            long time = node.session.lastAccessTime();
+            Node prev = tail;
+            while (prev != null && prev.session.lastAccessTime() > time) {
+                prev = prev.prev;
+            }
+            Node next = prev == null ? head : prev.next;
+            node.prev = prev;
+            node.next = next;
+            if (prev == null) {
+                head = node;
+            } else {
+                prev.next = node;
+            }
+            if (next == null) {
+                tail = node;
+            } else {
+                next.prev = node;
+            }
+        }
+
+        private void unlink(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    private SessionManager() {
+    }
+
+    /**
+     * add a store, before {@link #configure()}
+     */
+    public static synchronized void addStore(SessionStore store) {
+        added.add(store);
+    }
+
+    /**
+     * load the sessions from the stores and start them,
+     * the store of {@code session_store} and {@code session_replication_port} are added if set
+     */
+    public static synchronized void configure() {
+        if (stores.length > 0) {
+            return;
+        }
+        List<SessionStore> list = new ArrayList<>(added);
+        if (STORE_PATH != null) {
+            list.add(new SessionLog(STORE_PATH, STORE_SEGMENT));
+        }
+        if (ReplicatedSessionStore.enabled()) {
+            list.add(new ReplicatedSessionStore());
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<SessionStore> started = new ArrayList<>(list.size());
+        for (SessionStore store : list) {
+            try {
+                List<HttpSession> loaded = new ArrayList<>(store.load());
+                //the shards are in access order
+                loaded.sort(Comparator.comparingLong(HttpSession::lastAccessTime));
+                int count = 0;
+                for (HttpSession session : loaded) {
+                    if (!expired(session, start) && putLoaded(session)) {
+                        count++;
+                    }
+                }
+                started.add(store);
+                log.info("{} sessions loaded from {}", count, store);
+            } catch (IOException | RuntimeException e) {
+                //a broken file of a store does not stop the server
+                log.error("can not load the sessions from {}, it is not used", store, e);
+            }
+        }
+        List<HttpSession> live = liveSessionList();
+        started.removeIf(store -> {
+            try {
+                store.start(live);
+                return false;
+            } catch (IOException e) {
+                log.error("can not start {}, it is not used", store, e);
+                return true;
+            }
+        });
+        stores = started.toArray(new SessionStore[0]);
+        log.info("{} sessions are live, loaded in {} ms", live.size(), System.currentTimeMillis() - start);
+
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                log.error("error in compacting the session stores", e);
+            }
+        }, COMPACT_INTERVAL, COMPACT_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    //put the session loaded, if it is newer than the one already there
+    private static boolean putLoaded(HttpSession session) {
+        Shard shard = shard(session.sessionId());
+        if (shard == null) {
+            return false;
+        }
+        List<String> evictedIds;
+        synchronized (shard) {
+            HttpSession old = shard.get(session.sessionId());
+            if (old != null && old.lastAccessTime() >= session.lastAccessTime()) {
+                return false;
+            }
+            shard.put(session.sessionId(), session);
+            evictedIds = shard.takeEvicted();
+        }
+        removed(evictedIds);
+        return true;
+    }
+
+    static List<HttpSession> liveSessionList() {
+        List<HttpSession> live = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.addTo(live);
+            }
+        }
+        return live;
     }
 
     /**
-     * get a random sessionId
+     * let the stores compact with the live sessions
+     */
+    static void compact() throws IOException {
+        SessionStore[] current = stores;
+        if (current.length == 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        for (SessionStore store : current) {
+            store.compact(SessionManager::liveSessionList);
+        }
+        log.debug("the session stores compacted in {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * run the change from the store, the store is not told about it again
+     */
+    static void applyFrom(SessionStore store, Runnable change) {
+        SessionStore old = APPLYING.get();
+        APPLYING.set(store);
+        try {
+            change.run();
+        } finally {
+            APPLYING.set(old);
+        }
+    }
+
+    /*
+     * tell the stores about the changes
+     */
+
+    static void created(HttpSession session) {
+        SessionStore source = APPLYING.get();
+        for (SessionStore store : stores) {
+            if (store != source) {
+                store.created(session);
+            }
+        }
+    }
+
+    static void userChanged(HttpSession session) {
+        SessionStore source = APPLYING.get();
+        for (SessionStore store : stores) {
+            if (store != source) {
+                store.userChanged(session);
+            }
+        }
+    }
+
+    static void attributeChanged(HttpSession session, String key, Object value) {
+        SessionStore source = APPLYING.get();
+        for (SessionStore store : stores) {
+            if (store != source) {
+                store.attributeChanged(session, key, value);
+            }
+        }
+    }
+
+    static void attributeRemoved(HttpSession session, String key) {
+        SessionStore source = APPLYING.get();
+        for (SessionStore store : stores) {
+            if (store != source) {
+                store.attributeRemoved(session, key);
+            }
+        }
+    }
+
+    private static void removed(List<String> sessionIds) {
+        if (sessionIds != null) {
+            for (String sessionId : sessionIds) {
+                removed(sessionId);
+            }
+        }
+    }
+
+    private static void removed(String sessionId) {
+        SessionStore source = APPLYING.get();
+        for (SessionStore store : stores) {
+            if (store != source) {
+                store.removed(sessionId);
+            }
+        }
+    }
+
+    /**
+     * get a random sessionId in the shard of current thread
      */
     static String createSessionId() {
-        return HttpKit.createUniqueId();
+        int shard = SHARD.get();
+        return new StringBuilder(34)
+                .append(Character.toUpperCase(Character.forDigit(shard >> 4, 16)))
+                .append(Character.toUpperCase(Character.forDigit(shard & 0xf, 16)))
+                .append(HttpKit.createUniqueId())
+                .toString();
+    }
+
+    /**
+     * the shard encoded in the id
+     *
+     * @return null if the id is not made here
+     */
+    private static Shard shard(String sessionId) {
+        int index = shardIndex(sessionId);
+        return index < 0 ? null : shards[index];
     }
 
-    static void addSession(String sessionId, Channel channel) {
-        Map<String, HttpSession> map = sessions();
-        if (map.get(sessionId) == null) {
-            HttpSession httpSession = new HttpSession();
-            httpSession.setSessionId(sessionId);
-            httpSession.setChannel(channel);
-            map.put(sessionId, httpSession);
+    /**
+     * the index of the shard encoded in the id, -1 if the id is not made here
+     */
+    static int shardIndex(String sessionId) {
+        if (sessionId.length() < 2) {
+            return -1;
+        }
+        int high = Character.digit(sessionId.charAt(0), 16);
+        int low = Character.digit(sessionId.charAt(1), 16);
+        if (high < 0 || low < 0) {
+            return -1;
         }
+        //the shards may be fewer than when the session was kept
+        return (high << 4 | low) & shards.length - 1;
     }
 
     /**
-     * get target httpSession by sessionId
+     * create a session with a new random id
+     */
+    public static HttpSession createSession(Channel channel) {
+        return addSession(createSessionId(), channel);
+    }
+
+    /**
+     * @return the session of the id, the new one or the one already there,
+     * null if the id is not made by {@link #createSessionId()}
+     */
+    static HttpSession addSession(String sessionId, Channel channel) {
+        Shard shard = shard(sessionId);
+        if (shard == null) {
+            return null;
+        }
+        HttpSession httpSession = new HttpSession();
+        httpSession.setSessionId(sessionId);
+        httpSession.setChannel(channel);
+        List<String> evictedIds;
+        synchronized (shard) {
+            HttpSession old = shard.putIfAbsent(sessionId, httpSession);
+            if (old != null) {
+                return old;
+            }
+            created.increment();
+            evictedIds = shard.takeEvicted();
+        }
+        removed(evictedIds);
+        created(httpSession);
+        return httpSession;
+    }
+
+    /**
+     * get target httpSession by sessionId, and update the time of the last access
+     *
+     * @return null if not found or expired
      */
     static HttpSession getSession(String sessionId) {
-        Map<String, HttpSession> map = sessions();
-        return map.get(sessionId);
+        Shard shard = shard(sessionId);
+        if (shard == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        HttpSession session;
+        long previous;
+        synchronized (shard) {
+            session = shard.get(sessionId);
+            if (session == null) {
+                return null;
+            }
+            if (!expired(session, now)) {
+                previous = session.lastAccessTime();
+                session.touch(now);
+                shard.touched(sessionId);
+            } else {
+                shard.remove(sessionId);
+                expired.increment();
+                session = null;
+                previous = 0;
+            }
+        }
+        if (session == null) {
+            removed(sessionId);
+            return null;
+        }
+        for (SessionStore store : stores) {
+            store.accessed(session, previous);
+        }
+        return session;
+    }
+
+    /**
+     * get the session without the check of the time,
+     * the time of the last access and the order in the shard are not changed,
+     * for the stores reading the sessions
+     *
+     * @return null if not found
+     */
+    static HttpSession peek(String sessionId) {
+        Shard shard = shard(sessionId);
+        if (shard == null) {
+            return null;
+        }
+        synchronized (shard) {
+            return shard.get(sessionId);
+        }
+    }
+
+    /**
+     * add the session made by another node, at its place by the time of the last access
+     *
+     * @return the new session, or the one already there
+     */
+    static HttpSession putIfAbsent(String sessionId, long createTime, long lastAccessTime) {
+        Shard shard = shard(sessionId);
+        if (shard == null) {
+            //the id not made by the nodes, just dropped
+            HttpSession session = new HttpSession(sessionId);
+            session.setCreateTime(createTime);
+            session.touch(lastAccessTime);
+            return session;
+        }
+        HttpSession session;
+        List<String> evictedIds;
+        synchronized (shard) {
+            session = shard.get(sessionId);
+            if (session != null) {
+                return session;
+            }
+            session = new HttpSession(sessionId);
+            session.setCreateTime(createTime);
+            session.touch(lastAccessTime);
+            shard.put(sessionId, session);
+            evictedIds = shard.takeEvicted();
+        }
+        removed(evictedIds);
+        created(session);
+        return session;
+    }
+
+    /**
+     * the session is used on another node at the time,
+     * it is moved to its place as {@link #getSession} does, so the shard stays in the order of the last access.
+     * the session is removed at once if it is expired
+     */
+    static void touch(HttpSession session, long time) {
+        String sessionId = session.sessionId();
+        Shard shard = shard(sessionId);
+        if (shard == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (shard) {
+            if (shard.get(sessionId) != session) {
+                //removed already, or not the session in the shard
+                if (time > session.lastAccessTime()) {
+                    session.touch(time);
+                }
+                return;
+            }
+            if (time > session.lastAccessTime()) {
+                session.touch(time);
+                shard.touched(sessionId);
+            }
+            if (!expired(session, now)) {
+                return;
+            }
+            shard.remove(sessionId);
+            expired.increment();
+        }
+        removed(sessionId);
     }
 
     static boolean containsSession(String sessionId) {
-        return sessions.containsKey(sessionId);
+        Shard shard = shard(sessionId);
+        if (shard == null) {
+            return false;
+        }
+        synchronized (shard) {
+            return shard.containsKey(sessionId);
+        }
     }
 
-//    //清除过期session
-//    public static void sessionClear() {
-//        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-//        Runnable action = () -> {
-//            sessions.forEach((key, cookie) -> {
-//                if (cookie.getExpiredTime() < System.currentTimeMillis()) {
-//                    sessions.remove(key);
-//                }
-//            });
-//        };
-//        System.out.println("start ... ");
-//        executor.scheduleAtFixedRate(action, 5, 1, TimeUnit.HOURS);
-//    }
+    /**
+     * remove the expired sessions from the head of every shard
+     *
+     * @return the count removed
+     */
+    static int sweep() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        List<String> ids = new ArrayList<>();
+        for (Shard shard : shards) {
+            boolean more = true;
+            while (more) {
+                more = false;
+                synchronized (shard) {
+                    for (int i = 0; i < SWEEP_BATCH; i++) {
+                        HttpSession session = shard.first();
+                        if (session == null || !expired(session, now)) {
+                            break;
+                        }
+                        shard.remove(session.sessionId());
+                        ids.add(session.sessionId());
+                        removed++;
+                        more = i == SWEEP_BATCH - 1;
+                    }
+                }
+                //out of the lock
+                removed(ids);
+                ids.clear();
+            }
+        }
+        expired.add(removed);
+        return removed;
+    }
 
+    //idle too long, or older than its max age
+    private static boolean expired(HttpSession session, long now) {
+        return session.lastAccessTime() + IDLE_TIMEOUT <= now || session.hasExpires(now);
+    }
 
     /**
      * remove target session by sessionid
      */
     public static void remove(String sessionid) {
-        sessions.remove(sessionid);
+        Shard shard = shard(sessionid);
+        if (shard == null) {
+            return;
+        }
+        synchronized (shard) {
+            shard.remove(sessionid);
+        }
+        removed(sessionid);
+    }
+
+    /**
+     * the count of the sessions now
+     */
+    public static int liveSessions() {
+        int count = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                count += shard.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * the count of the shards
+     */
+    public static int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * the count of the sessions created since the start
+     */
+    public static long createdSessions() {
+        return created.sum();
+    }
+
+    /**
+     * the count of the sessions removed for idle or max age
+     */
+    public static long expiredSessions() {
+        return expired.sum();
+    }
+
+    /**
+     * the count of the sessions removed for {@code session_max_count}
+     */
+    public static long evictedSessions() {
+        return evicted.sum();
     }
 
 }
@@ -0,0 +1,419 @@
+package org.ink.web.http;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.Feature;
+import com.alibaba.fastjson.parser.ParserConfig;
+import org.ink.security.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the binary records of the changes of the sessions,
+ * used by the log on the disk and the replication between the nodes
+ *
+ * a record is the type, the session id, then the fields of the type
+ *
+ * the password of the user is not kept,
+ * the attributes are kept as json, so they come back as the json types.
+ * the records may come from the other nodes, so {@code @type} is not read as a class,
+ * see {@link #parseJson(String)}
+ *
+ * @author zhuyichen
+ * @see SessionLog
+ * @see ReplicatedSessionStore
+ */
+final class SessionRecords {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionRecords.class);
+
+    //the types of the records
+    static final byte SESSION = 1;
+    static final byte USER = 2;
+    static final byte ATTRIBUTE = 3;
+    static final byte REMOVE_ATTRIBUTE = 4;
+    static final byte REMOVE = 5;
+    //the whole session
+    static final byte SNAPSHOT = 6;
+    //ask for all the sessions of the other node, and the end of them
+    static final byte SYNC = 7;
+    static final byte SYNC_DONE = 8;
+    //the time of the last access
+    static final byte ACCESS = 9;
+
+    //no autotype, whatever the global config is
+    private static final ParserConfig PARSER_CONFIG = new ParserConfig();
+
+    //@type and $ref are the plain keys
+    private static final int PARSER_FEATURES = Feature.config(
+            Feature.config(JSON.DEFAULT_PARSER_FEATURE, Feature.DisableSpecialKeyDetect, true),
+            Feature.IgnoreAutoType, true);
+
+    static {
+        PARSER_CONFIG.setAutoTypeSupport(false);
+    }
+
+    //the longest string in a record, an attribute as json most likely
+    private static final int MAX_STRING = 16 * 1024 * 1024;
+
+    private SessionRecords() {
+    }
+
+    /**
+     * the value of an attribute, only the json types, never a class named in the json
+     */
+    static Object parseJson(String json) {
+        return JSON.parse(json, PARSER_CONFIG, PARSER_FEATURES);
+    }
+
+    /**
+     * where the records are applied to
+     */
+    interface Target {
+
+        /**
+         * @return null if not found
+         */
+        HttpSession get(String sessionId);
+
+        /**
+         * @return the new session, or the one already there
+         */
+        HttpSession create(String sessionId, long createTime, long lastAccessTime);
+
+        /**
+         * the session is used at the time, nothing is changed if it is not later than the last access
+         */
+        void touch(HttpSession session, long time);
+
+        void remove(String sessionId);
+    }
+
+    /**
+     * the sessions in a map, to load them at the start
+     */
+    static final class MapTarget implements Target {
+
+        final Map<String, HttpSession> sessions;
+
+        MapTarget(int expected) {
+            sessions = new HashMap<>(Math.max(16, expected * 4 / 3));
+        }
+
+        @Override
+        public HttpSession get(String sessionId) {
+            return sessions.get(sessionId);
+        }
+
+        @Override
+        public HttpSession create(String sessionId, long createTime, long lastAccessTime) {
+            return sessions.computeIfAbsent(sessionId, id -> {
+                HttpSession session = new HttpSession(id);
+                session.setCreateTime(createTime);
+                session.touch(lastAccessTime);
+                return session;
+            });
+        }
+
+        @Override
+        public void touch(HttpSession session, long time) {
+            if (time > session.lastAccessTime()) {
+                session.touch(time);
+            }
+        }
+
+        @Override
+        public void remove(String sessionId) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    /**
+     * apply the records to the target one by one
+     */
+    static final class Decoder {
+
+        private final Target target;
+
+        //the roles and the names of the attributes are the same in most sessions, keep only one of them
+        private final Map<String, String> strings = new HashMap<>();
+
+        Decoder(Target target) {
+            this.target = target;
+        }
+
+        /**
+         * @return the type of the record
+         * @throws IllegalArgumentException if the record is broken, the ones before are applied
+         */
+        byte apply(ByteBuffer record) {
+            byte type = record.get();
+            String id = getString(record);
+            if (id == null) {
+                throw new IllegalArgumentException("broken session record, no session id");
+            }
+            HttpSession session = type == SNAPSHOT || type == SESSION ? null : target.get(id);
+            switch (type) {
+                case SNAPSHOT:
+                    long createTime = record.getLong();
+                    long lastAccessTime = record.getLong();
+                    session = target.create(id, createTime, lastAccessTime);
+                    target.touch(session, lastAccessTime);
+                    session.setMaxAge(record.getLong());
+                    session.setUser(getUser(record));
+                    Map<String, Object> attributes = new HashMap<>();
+                    //a key and a value, at least 8 bytes each
+                    for (int i = getCount(record, 8); i > 0; i--) {
+                        String key = getShared(record);
+                        attributes.put(key, parseJson(getString(record)));
+                    }
+                    Map<String, Object> old = session.attributeMap();
+                    if (old != null) {
+                        for (String key : old.keySet()) {
+                            if (!attributes.containsKey(key)) {
+                                session.removeAttribute(key);
+                            }
+                        }
+                    }
+                    attributes.forEach(session::addAttribute);
+                    break;
+                case SESSION:
+                    long created = record.getLong();
+                    long accessed = record.getLong();
+                    session = target.create(id, created, accessed);
+                    target.touch(session, accessed);
+                    session.setMaxAge(record.getLong());
+                    break;
+                case USER:
+                    if (session != null) {
+                        session.setUser(getUser(record));
+                    }
+                    break;
+                case ATTRIBUTE:
+                    if (session != null) {
+                        String key = getShared(record);
+                        session.addAttribute(key, parseJson(getString(record)));
+                    }
+                    break;
+                case ACCESS:
+                    if (session != null) {
+                        target.touch(session, record.getLong());
+                    }
+                    break;
+                case REMOVE_ATTRIBUTE:
+                    if (session != null) {
+                        session.removeAttribute(getString(record));
+                    }
+                    break;
+                case REMOVE:
+                    target.remove(id);
+                    break;
+                case SYNC:
+                case SYNC_DONE:
+                    break;
+                default:
+                    log.warn("unknown session record {}", type);
+            }
+            return type;
+        }
+
+        private User getUser(ByteBuffer record) {
+            String userName = getString(record);
+            if (userName == null) {
+                return null;
+            }
+            int count = getCount(record, 4);
+            List<String> roles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                roles.add(getShared(record));
+            }
+            return new User(userName, null, roles);
+        }
+
+        private String getShared(ByteBuffer record) {
+            String value = getString(record);
+            return value == null ? null : strings.computeIfAbsent(value, v -> v);
+        }
+    }
+
+    /**
+     * the count of the items after it, every item takes at least {@code bytes}
+     */
+    private static int getCount(ByteBuffer record, int bytes) {
+        int count = record.getInt();
+        if (count < 0 || count > record.remaining() / bytes) {
+            throw new IllegalArgumentException("broken session record, count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length is longer than the rest of the record
+     */
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > record.remaining() || length > MAX_STRING) {
+            throw new IllegalArgumentException("broken session record, string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * write the records into one buffer, used again for every record
+     */
+    static final class Encoder {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        ByteBuffer session(HttpSession session) {
+            start(SESSION, session.sessionId());
+            ensure(24);
+            buffer.putLong(session.createTime());
+            buffer.putLong(session.lastAccessTime());
+            buffer.putLong(session.maxAge());
+            return end();
+        }
+
+        ByteBuffer access(HttpSession session) {
+            start(ACCESS, session.sessionId());
+            ensure(8);
+            buffer.putLong(session.lastAccessTime());
+            return end();
+        }
+
+        ByteBuffer user(HttpSession session) {
+            start(USER, session.sessionId());
+            putUser(session.user());
+            return end();
+        }
+
+        /**
+         * the session with its user and attributes in one record
+         */
+        ByteBuffer snapshot(HttpSession session) {
+            start(SNAPSHOT, session.sessionId());
+            ensure(24);
+            buffer.putLong(session.createTime());
+            buffer.putLong(session.lastAccessTime());
+            buffer.putLong(session.maxAge());
+            putUser(session.user());
+
+            int countAt = buffer.position();
+            int count = 0;
+            ensure(4);
+            buffer.putInt(0);
+            Map<String, Object> attributes = session.attributeMap();
+            if (attributes != null) {
+                for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                    String json = toJson(entry.getKey(), entry.getValue());
+                    if (json != null) {
+                        putString(entry.getKey());
+                        putString(json);
+                        count++;
+                    }
+                }
+            }
+            buffer.putInt(countAt, count);
+            return end();
+        }
+
+        /**
+         * @return null if the value can not be written as json
+         */
+        ByteBuffer attribute(HttpSession session, String key, Object value) {
+            String json = toJson(key, value);
+            if (json == null) {
+                return null;
+            }
+            start(ATTRIBUTE, session.sessionId());
+            putString(key);
+            putString(json);
+            return end();
+        }
+
+        ByteBuffer removeAttribute(HttpSession session, String key) {
+            start(REMOVE_ATTRIBUTE, session.sessionId());
+            putString(key);
+            return end();
+        }
+
+        ByteBuffer remove(String sessionId) {
+            start(REMOVE, sessionId);
+            return end();
+        }
+
+        /**
+         * the record of {@link #SYNC} or {@link #SYNC_DONE}
+         */
+        ByteBuffer control(byte type) {
+            start(type, "");
+            return end();
+        }
+
+        private void putUser(User user) {
+            if (user == null) {
+                putString(null);
+                return;
+            }
+            putString(user.getUserName());
+            List<String> roles = user.getRoles();
+            ensure(4);
+            buffer.putInt(roles == null ? 0 : roles.size());
+            if (roles != null) {
+                roles.forEach(this::putString);
+            }
+        }
+
+        private static String toJson(String key, Object value) {
+            try {
+                return JSON.toJSONString(value);
+            } catch (RuntimeException e) {
+                log.warn("the session attribute [{}] is not kept: {}", key, e.getMessage());
+                return null;
+            }
+        }
+
+        private void start(byte type, String sessionId) {
+            buffer.clear();
+            buffer.put(type);
+            putString(sessionId);
+        }
+
+        private ByteBuffer end() {
+            buffer.flip();
+            return buffer;
+        }
+
+        private void putString(String value) {
+            if (value == null) {
+                ensure(4);
+                buffer.putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void ensure(int length) {
+            if (buffer.remaining() < length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.ink.web.http;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * somewhere the sessions are kept besides the memory of this node,
+ * like the disk or the other nodes
+ *
+ * the store is added by {@link SessionManager#addStore(SessionStore)} before the server starts,
+ * then {@link SessionManager#configure()} calls {@link #load()} and {@link #start(Collection)} once.
+ * the changes of the sessions are told to every store, except the store the change comes from.
+ * the methods are called by the threads of the requests, so they should return soon
+ *
+ * @author zhuyichen
+ * @see SessionLog
+ * @see ReplicatedSessionStore
+ */
+public interface SessionStore {
+
+    /**
+     * the sessions kept before, the expired ones are dropped by SessionManager
+     */
+    default Collection<HttpSession> load() throws IOException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * start to keep the changes
+     *
+     * @param live the sessions in SessionManager after all the stores are loaded
+     */
+    default void start(Collection<HttpSession> live) throws IOException {
+    }
+
+    /**
+     * the session is created, or its max age is changed
+     */
+    void created(HttpSession session);
+
+    void userChanged(HttpSession session);
+
+    void attributeChanged(HttpSession session, String key, Object value);
+
+    void attributeRemoved(HttpSession session, String key);
+
+    /**
+     * the session is removed, evicted or expired, called out of the locks of SessionManager
+     */
+    void removed(String sessionId);
+
+    /**
+     * the session is used by a request
+     *
+     * @param previous the time of the last access before
+     */
+    default void accessed(HttpSession session, long previous) {
+    }
+
+    /**
+     * called every {@code session_compact_interval} seconds
+     *
+     * @param live gets the live sessions in SessionManager at the time it is called,
+     *             so the changes up to then can be told apart from the ones after
+     */
+    default void compact(Supplier<Collection<HttpSession>> live) throws IOException {
+    }
+}
@@ -0,0 +1,139 @@
+package org.ink.web.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the counts of the times in buckets, like the HdrHistogram
+ *
+ * the times are in microseconds, the buckets grow by the powers of 2,
+ * every power of 2 is cut into {@code 2^SUB_BITS} buckets of the same width,
+ * so a value found from the buckets is at most 1/8 more than the real one
+ *
+ * the buckets are kept in some stripes, the thread writes the stripe of its id,
+ * the stripes are added up when read. nothing is locked
+ *
+ * @author zhuyichen
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+
+    //the times over 2^MAX_EXPONENT microseconds, about 12 days, are in the last bucket
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB;
+
+    private static final int STRIPES = Math.min(8,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * @param micros the time in microseconds
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        stripes[stripe].incrementAndGet(bucket(micros));
+        count.increment();
+        sum.add(micros);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all the times in microseconds
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * the counts of the buckets added up, to get some percentiles from one read
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = stripe.get(i);
+                counts[i] += c;
+                total += c;
+            }
+        }
+        return new Snapshot(counts, total);
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long total;
+
+        private Snapshot(long[] counts, long total) {
+            this.counts = counts;
+            this.total = total;
+        }
+
+        public long total() {
+            return total;
+        }
+
+        /**
+         * @param percentile like 0.99
+         * @return the time in microseconds, the highest one of its bucket, 0 if nothing is recorded
+         */
+        public long percentile(double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highest(i);
+                }
+            }
+            return highest(counts.length - 1);
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        return (exponent - SUB_BITS + 1) * SUB + (int) (value >>> (exponent - SUB_BITS) & (SUB - 1));
+    }
+
+    static long highest(int bucket) {
+        if (bucket < SUB) {
+            return bucket;
+        }
+        int exponent = bucket / SUB + SUB_BITS - 1;
+        long lowest = (long) (SUB + bucket % SUB) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,142 @@
+package org.ink.web.metrics;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.ink.web.annotation.Controller;
+import org.ink.web.annotation.GET;
+import org.ink.web.http.ErrorResponses;
+import org.ink.web.http.HttpHeader;
+import org.ink.web.http.Response;
+import org.ink.web.http.SessionManager;
+import org.ink.web.route.Route;
+import org.ink.web.route.RouteFinder;
+
+import java.util.Locale;
+
+/**
+ * the metrics in the text format of Prometheus, registered when {@code metrics=true}
+ *
+ * <ul>
+ *     <li>ink_requests_total, ink_request_errors_total, ink_requests_in_flight of every route</li>
+ *     <li>ink_request_duration_seconds of every route, a summary with p50, p99 and p999</li>
+ *     <li>ink_request_phase_seconds of every phase, if {@code phase_timing=true}, see {@link PhaseTimer}</li>
+ *     <li>ink_rejected_total of every status, see {@link ErrorResponses}</li>
+ *     <li>ink_sessions_live, ink_sessions_created_total, ink_sessions_expired_total, ink_sessions_evicted_total</li>
+ * </ul>
+ *
+ * @author zhuyichen
+ * @see RouteMetrics
+ */
+@Controller
+public class MetricsRoutes {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    @GET("/metrics")
+    public Response metrics() {
+        Response response = Response.ok().header(HttpHeader.CONTENT_TYPE, CONTENT_TYPE).build();
+        response.setContent(ByteBufUtil.writeUtf8(PooledByteBufAllocator.DEFAULT, scrape()));
+        return response;
+    }
+
+    /**
+     * all the metrics as the text
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        type(out, "ink_requests_total", "counter", "the requests of the route");
+        for (Route route : RouteFinder.routes()) {
+            sample(out, "ink_requests_total", route, null, route.metrics().requests());
+        }
+        type(out, "ink_request_errors_total", "counter", "the requests of the route answered with 5xx");
+        for (Route route : RouteFinder.routes()) {
+            sample(out, "ink_request_errors_total", route, null, route.metrics().errors());
+        }
+        type(out, "ink_requests_in_flight", "gauge", "the requests of the route not answered yet");
+        for (Route route : RouteFinder.routes()) {
+            sample(out, "ink_requests_in_flight", route, null, route.metrics().inFlight());
+        }
+
+        type(out, "ink_request_duration_seconds", "summary", "the time from the route is found to the response is written");
+        for (Route route : RouteFinder.routes()) {
+            LatencyHistogram latency = route.metrics().latency();
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            for (double quantile : QUANTILES) {
+                sample(out, "ink_request_duration_seconds", route, quantile, snapshot.percentile(quantile) / 1e6);
+            }
+            sample(out, "ink_request_duration_seconds_sum", route, null, latency.sum() / 1e6);
+            sample(out, "ink_request_duration_seconds_count", route, null, latency.count());
+        }
+
+        if (PhaseTimer.ENABLED) {
+            type(out, "ink_request_phase_seconds", "summary", "the time of the phase of all the requests");
+            for (PhaseTimer.Phase phase : PhaseTimer.Phase.values()) {
+                LatencyHistogram histogram = PhaseTimer.histogram(phase);
+                LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+                String name = phase.name().toLowerCase(Locale.ROOT);
+                for (double quantile : QUANTILES) {
+                    out.append("ink_request_phase_seconds{phase=\"").append(name).append("\",quantile=\"")
+                            .append(quantile).append("\"} ").append(snapshot.percentile(quantile) / 1e6).append('\n');
+                }
+                out.append("ink_request_phase_seconds_sum{phase=\"").append(name).append("\"} ")
+                        .append(histogram.sum() / 1e6).append('\n');
+                out.append("ink_request_phase_seconds_count{phase=\"").append(name).append("\"} ")
+                        .append(histogram.count()).append('\n');
+            }
+        }
+
+        type(out, "ink_rejected_total", "counter", "the requests answered without running a route");
+        for (HttpResponseStatus status : ErrorResponses.statuses()) {
+            out.append("ink_rejected_total{status=\"").append(status.code()).append("\"} ")
+                    .append(ErrorResponses.rejected(status)).append('\n');
+        }
+
+        type(out, "ink_sessions_live", "gauge", "the sessions now");
+        out.append("ink_sessions_live ").append(SessionManager.liveSessions()).append('\n');
+        type(out, "ink_sessions_created_total", "counter", "the sessions created");
+        out.append("ink_sessions_created_total ").append(SessionManager.createdSessions()).append('\n');
+        type(out, "ink_sessions_expired_total", "counter", "the sessions removed for idle or max age");
+        out.append("ink_sessions_expired_total ").append(SessionManager.expiredSessions()).append('\n');
+        type(out, "ink_sessions_evicted_total", "counter", "the sessions removed for session_max_count");
+        out.append("ink_sessions_evicted_total ").append(SessionManager.evictedSessions()).append('\n');
+        return out.toString();
+    }
+
+    private static void type(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, Route route, Double quantile, double value) {
+        out.append(name).append("{method=\"").append(route.httpMethod().name()).append("\",path=\"");
+        escape(out, route.path());
+        out.append('"');
+        if (quantile != null) {
+            out.append(",quantile=\"").append(quantile).append('"');
+        }
+        out.append("} ");
+        if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.ink.web.metrics;
+
+import org.ink.WebConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * the time of every phase of one request, see {@link Phase}
+ *
+ * <ul>
+ *     <li>phase_timing         true to time the phases, default is false</li>
+ *     <li>slow_request_millis  the requests longer than this are logged with the phases, default is 1000</li>
+ * </ul>
+ *
+ * the flag is read once into a static final field, when it is false
+ * {@link #start()} gives null and {@link #mark(PhaseTimer, Phase)} is removed by the jit,
+ * so nothing is left in the handler
+ *
+ * the time of a phase is from the mark before to its own mark,
+ * the times of all the requests are kept in one histogram for every phase
+ *
+ * @author zhuyichen
+ * @see org.ink.server.netty.HttpRequestHandler
+ */
+public final class PhaseTimer {
+
+    private static final Logger log = LoggerFactory.getLogger(PhaseTimer.class);
+
+    public static final boolean ENABLED = Boolean.parseBoolean(WebConfig.getConfig("phase_timing"));
+
+    private static final long SLOW = WebConfig.getLongConfig("slow_request_millis", 1000) * 1_000_000;
+
+    public enum Phase {
+        //read the request and find the route
+        ROUTE,
+        //wait in the queue of the worker pool, only for @Blocking
+        QUEUE,
+        //set the args of the route method
+        BIND,
+        //the before aop chain
+        BEFORE,
+        //the route method
+        INVOKE,
+        //wait for the CompletionStage returned
+        ASYNC,
+        //the after aop chain and the view
+        AFTER,
+        //the body to bytes
+        ENCODE,
+        //back to the event loop and write into the pipeline
+        WRITE
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private final long start;
+
+    private long last;
+
+    private final long[] times = new long[PHASES.length];
+
+    private PhaseTimer(long start) {
+        this.start = start;
+        this.last = start;
+    }
+
+    /**
+     * @return null if not enabled
+     */
+    public static PhaseTimer start() {
+        return ENABLED ? new PhaseTimer(System.nanoTime()) : null;
+    }
+
+    /**
+     * end the phase of the timer, nothing is done if the timer is null
+     */
+    public static void mark(PhaseTimer timer, Phase phase) {
+        if (ENABLED && timer != null) {
+            long now = System.nanoTime();
+            timer.times[phase.ordinal()] += now - timer.last;
+            timer.last = now;
+        }
+    }
+
+    /**
+     * keep the times of the phases, and log them if the request is slow
+     */
+    public void end(String method, String uri) {
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] != 0) {
+                histograms[i].record(times[i] / 1000);
+            }
+        }
+        long total = last - start;
+        if (total > SLOW && log.isWarnEnabled()) {
+            StringBuilder phases = new StringBuilder();
+            for (int i = 0; i < times.length; i++) {
+                if (times[i] != 0) {
+                    phases.append(' ').append(PHASES[i].name().toLowerCase(Locale.ROOT)).append('=')
+                            .append(String.format(Locale.ROOT, "%.3f", times[i] / 1e6));
+                }
+            }
+            log.warn("slow request {} [{}] {}ms:{}", method, uri, total / 1_000_000, phases);
+        }
+    }
+
+    /**
+     * the times of all the requests in the phase
+     */
+    public static LatencyHistogram histogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+}
@@ -0,0 +1,60 @@
+package org.ink.web.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the counts and the times of the requests of one route
+ *
+ * {@link #start()} is called when the route is found,
+ * {@link #end(long, boolean)} when the response is written,
+ * so the time of a {@code @Blocking} or async route includes the waiting
+ *
+ * @author zhuyichen
+ * @see MetricsRoutes
+ */
+public final class RouteMetrics {
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @return the start time for {@link #end(long, boolean)}
+     */
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * @param error the status of the response is 5xx
+     */
+    public void end(long start, boolean error) {
+        latency.record((System.nanoTime() - start) / 1000);
+        inFlight.decrement();
+        requests.increment();
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public long inFlight() {
+        return inFlight.sum();
+    }
+
+    public LatencyHistogram latency() {
+        return latency;
+    }
+}
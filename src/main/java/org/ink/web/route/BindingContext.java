@@ -0,0 +1,220 @@
+package org.ink.web.route;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.multipart.Attribute;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.handler.codec.http.multipart.InterfaceHttpPostRequestDecoder;
+import io.netty.util.CharsetUtil;
+import org.ink.web.http.RoutedHttpRequest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the data of one request used by the {@link ParameterBinder}s
+ *
+ * every part of the request is decoded only when one binder needs it,
+ * and only once no matter how many binders use it
+ *
+ * the body of a {@link RoutedHttpRequest} may be already decoded
+ * while it arrives, then it is used as it is
+ *
+ * @author zhuyichen
+ */
+public final class BindingContext {
+
+    //upload files are always put on the disk, so FileUpload.getFile() works
+    private static final DefaultHttpDataFactory MULTIPART_FACTORY = new DefaultHttpDataFactory(true);
+    private static final DefaultHttpDataFactory FORM_FACTORY = new DefaultHttpDataFactory(false);
+
+    private final Invocation invocation;
+    private final FullHttpRequest request;
+
+    //lazy init
+    private Map<String, List<String>> queryParams;
+    private Map<String, String> formParams;
+    private Map<String, File> files;
+    private HttpPostRequestDecoder bodyDecoder;
+    private List<InputStream> streams;
+
+    public BindingContext(Invocation invocation, FullHttpRequest request) {
+        this.invocation = invocation;
+        this.request = request;
+    }
+
+    public Invocation invocation() {
+        return invocation;
+    }
+
+    public FullHttpRequest request() {
+        return request;
+    }
+
+    /**
+     * get the index-th segment of the path, the first one after '/' is 0
+     *
+     * @return null if the path is not so long
+     */
+    public String pathSegment(int index) {
+        String uri = request.uri();
+        int end = uri.indexOf('?');
+        if (end == -1) {
+            end = uri.length();
+        }
+        int start = uri.startsWith("/") ? 1 : 0;
+        for (int i = 0; i < index; i++) {
+            start = uri.indexOf('/', start);
+            if (start == -1 || start >= end) {
+                return null;
+            }
+            start++;
+        }
+        int segmentEnd = uri.indexOf('/', start);
+        if (segmentEnd == -1 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+        return start <= segmentEnd ? uri.substring(start, segmentEnd) : null;
+    }
+
+    /**
+     * the first value of the query string parameter
+     */
+    public String queryParam(String name) {
+        if (queryParams == null) {
+            queryParams = new QueryStringDecoder(request.uri()).parameters();
+        }
+        List<String> list = queryParams.get(name);
+        return list == null || list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * the attribute of the post body
+     */
+    public String formParam(String name) throws IOException {
+        decodeBody();
+        return formParams.get(name);
+    }
+
+    /**
+     * the upload file of the multipart body
+     */
+    public File file(String name) throws IOException {
+        decodeBody();
+        return files.get(name);
+    }
+
+    /**
+     * the upload file of the multipart body as a stream,
+     * closed when the invocation is recycled
+     */
+    public InputStream fileStream(String name) throws IOException {
+        File file = file(name);
+        return file == null ? null : track(new FileInputStream(file));
+    }
+
+    public String contentType() {
+        return request.headers().get(HttpHeaderNames.CONTENT_TYPE);
+    }
+
+    public String body() throws IOException {
+        FileUpload rawBody = rawBody();
+        if (rawBody != null) {
+            return rawBody.getString(CharsetUtil.UTF_8);
+        }
+        return request.content().toString(CharsetUtil.UTF_8);
+    }
+
+    /**
+     * the whole body as it is, closed when the invocation is recycled
+     */
+    public InputStream bodyStream() throws IOException {
+        FileUpload rawBody = rawBody();
+        if (rawBody == null) {
+            return new ByteBufInputStream(request.content().duplicate());
+        }
+        if (rawBody.isInMemory()) {
+            return new ByteBufInputStream(rawBody.getByteBuf().duplicate());
+        }
+        return track(new FileInputStream(rawBody.getFile()));
+    }
+
+    private FileUpload rawBody() {
+        return request instanceof RoutedHttpRequest ? ((RoutedHttpRequest) request).rawBody() : null;
+    }
+
+    private InputStream track(InputStream in) {
+        if (streams == null) {
+            streams = new ArrayList<>(2);
+        }
+        streams.add(in);
+        return in;
+    }
+
+    private void decodeBody() throws IOException {
+        if (formParams != null) {
+            return;
+        }
+        String contentType = contentType();
+        //no content type is decoded as a form, like the browsers do
+        if (contentType != null
+                && !contentType.startsWith("multipart/form-data")
+                && !contentType.startsWith("application/x-www-form-urlencoded")) {
+            formParams = Collections.emptyMap();
+            files = Collections.emptyMap();
+            return;
+        }
+
+        formParams = new HashMap<>();
+        files = new HashMap<>();
+        //decoded while the body arrives, the request deletes it
+        InterfaceHttpPostRequestDecoder decoder = request instanceof RoutedHttpRequest
+                ? ((RoutedHttpRequest) request).decoder() : null;
+        if (decoder == null) {
+            bodyDecoder = new HttpPostRequestDecoder(
+                    contentType == null || !contentType.startsWith("multipart/form-data") ? FORM_FACTORY : MULTIPART_FACTORY,
+                    request);
+            decoder = bodyDecoder;
+        }
+        for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
+            if (data.getHttpDataType() == InterfaceHttpData.HttpDataType.Attribute) {
+                formParams.putIfAbsent(data.getName(), ((Attribute) data).getValue());
+            }
+            else if (data.getHttpDataType() == InterfaceHttpData.HttpDataType.FileUpload) {
+                files.putIfAbsent(data.getName(), ((FileUpload) data).getFile());
+            }
+        }
+    }
+
+    /**
+     * delete the temp files of the upload and close the streams,
+     * called when the invocation is recycled
+     */
+    void release() {
+        if (streams != null) {
+            for (InputStream in : streams) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+            streams = null;
+        }
+        if (bodyDecoder != null) {
+            bodyDecoder.destroy();
+            bodyDecoder = null;
+        }
+    }
+}
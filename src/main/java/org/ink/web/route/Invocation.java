@@ -0,0 +1,143 @@
+package org.ink.web.route;
+
+import io.netty.util.Recycler;
+import org.ink.web.http.Request;
+import org.ink.web.http.Response;
+import org.ink.web.metrics.PhaseTimer;
+
+import java.util.Arrays;
+
+/**
+ * the context of one call of a route
+ *
+ * every request gets its own invocation, so the arguments
+ * of the route method are never shared between event loops
+ *
+ * invocations are pooled by the count of the arguments,
+ * the pool is thread local, so every event loop recycles its own arrays
+ *
+ * @author zhuyichen
+ * @see org.ink.web.route.RouteSetter
+ */
+public final class Invocation {
+
+    /**
+     * routes with more arguments than this are not pooled
+     */
+    private static final int MAX_POOLED_ARGS = 16;
+
+    private static final Recycler<?>[] RECYCLERS = new Recycler<?>[MAX_POOLED_ARGS + 1];
+
+    static {
+        for (int i = 0; i <= MAX_POOLED_ARGS; i++) {
+            final int length = i;
+            RECYCLERS[i] = new Recycler<Invocation>() {
+                @Override
+                protected Invocation newObject(Handle<Invocation> handle) {
+                    return new Invocation(handle, length);
+                }
+            };
+        }
+    }
+
+    private final Recycler.Handle<Invocation> handle;
+
+    /**
+     * the arguments of the route method
+     */
+    private final Object[] args;
+
+    private Route route;
+    private Request request;
+    private Response response;
+    private BindingContext bindingContext;
+
+    //the start time of the request, see RouteMetrics
+    private long startTime;
+
+    //null if phase_timing is not enabled
+    private PhaseTimer timer;
+
+    private Invocation(Recycler.Handle<Invocation> handle, int length) {
+        this.handle = handle;
+        this.args = new Object[length];
+    }
+
+    /**
+     * get one invocation from the pool of current thread
+     */
+    @SuppressWarnings("unchecked")
+    public static Invocation newInstance(Route route, Request request, Response response) {
+        int length = route.getMethod().getParameterCount();
+        Invocation invocation;
+        if (length <= MAX_POOLED_ARGS) {
+            invocation = ((Recycler<Invocation>) RECYCLERS[length]).get();
+        } else {
+            invocation = new Invocation(null, length);
+        }
+        invocation.route = route;
+        invocation.request = request;
+        invocation.response = response;
+        return invocation;
+    }
+
+    public Route route() {
+        return route;
+    }
+
+    public Request request() {
+        return request;
+    }
+
+    public Response response() {
+        return response;
+    }
+
+    public void setResponse(Response response) {
+        this.response = response;
+    }
+
+    public long startTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public PhaseTimer timer() {
+        return timer;
+    }
+
+    public void setTimer(PhaseTimer timer) {
+        this.timer = timer;
+    }
+
+    public Object[] args() {
+        return args;
+    }
+
+    void setBindingContext(BindingContext bindingContext) {
+        this.bindingContext = bindingContext;
+    }
+
+    /**
+     * clear the references and give it back to the pool,
+     * the temp files of the upload are deleted here
+     * the invocation must not be used after this
+     */
+    public void recycle() {
+        if (bindingContext != null) {
+            bindingContext.release();
+            bindingContext = null;
+        }
+        Arrays.fill(args, null);
+        route = null;
+        request = null;
+        response = null;
+        timer = null;
+        if (handle != null) {
+            handle.recycle(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.ink.web.route;
+
+/**
+ * calls one method on its bound object
+ *
+ * created once for every route and every aop method,
+ * so nothing about the method is looked up on the request path
+ *
+ * @author zhuyichen
+ * @see org.ink.web.route.MethodInvokers
+ */
+@FunctionalInterface
+public interface MethodInvoker {
+
+    /**
+     * @param args the arguments, the length is the count of the parameters
+     * @return the result, null for void
+     * @throws Exception the exception thrown by the method itself, never wrapped
+     */
+    Object invoke(Object[] args) throws Exception;
+}
@@ -0,0 +1,125 @@
+package org.ink.web.route;
+
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
+import org.ink.WebConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * create the {@link MethodInvoker} of one method
+ *
+ * the type is set by {@code method_invoker} in the config file
+ * <ul>
+ *     <li>methodhandle  the default, a MethodHandle bound to the object and spread over the arguments</li>
+ *     <li>fastclass     the FastClass of cglib, a generated class calls the method by index,
+ *                       only for public methods, falls back to methodhandle if cglib can not define the class</li>
+ *     <li>reflect       {@code Method.invoke}</li>
+ * </ul>
+ *
+ * @author zhuyichen
+ */
+public final class MethodInvokers {
+
+    private static final Logger log = LoggerFactory.getLogger(MethodInvokers.class);
+
+    private static final String TYPE = WebConfig.getConfig("method_invoker") == null
+            ? "methodhandle" : WebConfig.getConfig("method_invoker").trim().toLowerCase();
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    //set to false the first time cglib fails, so it is not tried again
+    private static volatile boolean fastClassAvailable = true;
+
+    private MethodInvokers() {
+    }
+
+    public static MethodInvoker create(Object object, Method method) {
+        method.setAccessible(true);
+        switch (TYPE) {
+            case "reflect":
+                return reflect(object, method);
+            case "fastclass":
+                MethodInvoker invoker = fastClass(object, method);
+                if (invoker != null) {
+                    return invoker;
+                }
+                return methodHandle(object, method);
+            default:
+                return methodHandle(object, method);
+        }
+    }
+
+    static MethodInvoker reflect(Object object, Method method) {
+        return args -> {
+            try {
+                return method.invoke(object, args);
+            } catch (InvocationTargetException e) {
+                throw rethrow(e.getCause());
+            }
+        };
+    }
+
+    static MethodInvoker methodHandle(Object object, Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            log.warn("can not unreflect {}, use reflect invoker", method);
+            return reflect(object, method);
+        }
+        if (!Modifier.isStatic(method.getModifiers())) {
+            handle = handle.bindTo(object);
+        }
+        final MethodHandle invoker = handle
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(INVOKER_TYPE);
+        return args -> {
+            try {
+                return (Object) invoker.invokeExact(args);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        };
+    }
+
+    static MethodInvoker fastClass(Object object, Method method) {
+        if (!fastClassAvailable
+                || !Modifier.isPublic(method.getModifiers())
+                || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            return null;
+        }
+        final FastMethod fastMethod;
+        try {
+            fastMethod = FastClass.create(method.getDeclaringClass()).getMethod(method);
+        } catch (Throwable t) {
+            fastClassAvailable = false;
+            log.warn("cglib FastClass is not available, use methodhandle invoker: {}", t.toString());
+            return null;
+        }
+        return args -> {
+            try {
+                return fastMethod.invoke(object, args);
+            } catch (InvocationTargetException e) {
+                throw rethrow(e.getCause());
+            }
+        };
+    }
+
+    private static Exception rethrow(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof Exception) {
+            return (Exception) t;
+        }
+        return new InvocationTargetException(t);
+    }
+}
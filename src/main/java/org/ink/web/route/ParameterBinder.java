@@ -0,0 +1,20 @@
+package org.ink.web.route;
+
+/**
+ * binds one argument of the route method
+ *
+ * binders are compiled once for every route in {@link RouteRegister#registerRoute},
+ * so the request path does not need to look at the reflection info again
+ *
+ * @author zhuyichen
+ * @see org.ink.web.route.ParameterBinders
+ */
+@FunctionalInterface
+public interface ParameterBinder {
+
+    /**
+     * @param context the decoded data of current request
+     * @return the argument, may be null
+     */
+    Object bind(BindingContext context) throws Exception;
+}
@@ -0,0 +1,200 @@
+package org.ink.web.route;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.handler.codec.http.HttpMethod;
+import org.ink.web.annotation.FILE;
+import org.ink.web.annotation.PathVariable;
+import org.ink.web.annotation.RequestJson;
+import org.ink.web.annotation.RequestParam;
+import org.ink.web.view.Model;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+
+/**
+ * compile the parameters of one route method into {@link ParameterBinder}s
+ *
+ * <ul>
+ *     <li>{@code @PathVariable} the segment of the path, at the index of {@code {name}} in the route path</li>
+ *     <li>{@code @RequestParam} the query string of GET, or the form of POST</li>
+ *     <li>{@code @RequestJson}  the json body</li>
+ *     <li>{@code @FILE}         the upload file of the multipart body, {@code File} or {@code InputStream}</li>
+ *     <li>{@code InputStream}   the whole body as it is</li>
+ *     <li>{@code Model}         a new model for the view</li>
+ * </ul>
+ *
+ * other parameters are left null
+ *
+ * the parameters also decide how the body is read, see {@link #bodyMode}
+ *
+ * @author zhuyichen
+ * @see org.ink.web.route.RouteSetter
+ */
+public final class ParameterBinders {
+
+    private ParameterBinders() {
+    }
+
+    /**
+     * @return one binder for every parameter, null for the one not bound
+     */
+    public static ParameterBinder[] compile(Route route) {
+        Method method = route.getMethod();
+        Parameter[] parameters = method.getParameters();
+        ParameterBinder[] binders = new ParameterBinder[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            binders[i] = compile(route, parameters[i]);
+        }
+        return binders;
+    }
+
+    private static ParameterBinder compile(Route route, Parameter parameter) {
+        String name = parameter.getName();
+        Class<?> type = parameter.getType();
+
+        if (parameter.getAnnotation(PathVariable.class) != null) {
+            int index = segmentIndex(route.path(), name);
+            if (index == -1) {
+                return null;
+            }
+            Converter converter = Converter.of(type);
+            return context -> converter.convert(context.pathSegment(index));
+        }
+        if (parameter.getAnnotation(RequestParam.class) != null) {
+            Converter converter = Converter.of(type);
+            if (route.httpMethod().equals(HttpMethod.GET)) {
+                return context -> converter.convert(context.queryParam(name));
+            }
+            if (route.httpMethod().equals(HttpMethod.POST)) {
+                return context -> converter.convert(context.formParam(name));
+            }
+            return null;
+        }
+        if (parameter.getAnnotation(RequestJson.class) != null) {
+            return context -> {
+                String contentType = context.contentType();
+                if (contentType == null || !contentType.startsWith("application/json")) {
+                    return null;
+                }
+                return JSON.parseObject(context.body(), type);
+            };
+        }
+        if (parameter.getAnnotation(FILE.class) != null) {
+            if (type.equals(InputStream.class)) {
+                return context -> context.fileStream(name);
+            }
+            return context -> context.file(name);
+        }
+        if (type.equals(InputStream.class)) {
+            return BindingContext::bodyStream;
+        }
+        if (type.equals(Model.class)) {
+            return context -> {
+                Model model = new Model();
+                context.invocation().response().setModel(model);
+                return model;
+            };
+        }
+        return null;
+    }
+
+    /**
+     * how the body of the request should be read for the parameters of the route
+     * <ul>
+     *     <li>RAW        one {@code InputStream} parameter</li>
+     *     <li>MULTIPART  one {@code @FILE} parameter</li>
+     *     <li>AGGREGATE  {@code @RequestJson}, or {@code @RequestParam} of POST</li>
+     *     <li>NONE       the others</li>
+     * </ul>
+     *
+     * the raw body is not decoded, so an {@code InputStream} parameter
+     * can not be used with the others reading the body
+     *
+     * @throws IllegalStateException if the route reads the raw body and the form or the json too
+     */
+    public static Route.BodyMode bodyMode(Route route) {
+        Route.BodyMode mode = Route.BodyMode.NONE;
+        boolean decoded = false;
+        for (Parameter parameter : route.getMethod().getParameters()) {
+            Route.BodyMode needed = Route.BodyMode.NONE;
+            if (parameter.getAnnotation(FILE.class) != null) {
+                needed = Route.BodyMode.MULTIPART;
+            }
+            else if (parameter.getType().equals(InputStream.class)) {
+                needed = Route.BodyMode.RAW;
+            }
+            else if (parameter.getAnnotation(RequestJson.class) != null
+                    || (parameter.getAnnotation(RequestParam.class) != null
+                        && route.httpMethod().equals(HttpMethod.POST))) {
+                needed = Route.BodyMode.AGGREGATE;
+            }
+            if (needed == Route.BodyMode.MULTIPART || needed == Route.BodyMode.AGGREGATE) {
+                decoded = true;
+            }
+            //RAW > MULTIPART > AGGREGATE > NONE
+            if (needed.compareTo(mode) > 0) {
+                mode = needed;
+            }
+        }
+        if (mode == Route.BodyMode.RAW && decoded) {
+            throw new IllegalStateException("route " + route.httpMethod() + " [" + route.path()
+                    + "] reads the body as InputStream, it can not have @FILE, @RequestJson or the @RequestParam of POST");
+        }
+        return mode;
+    }
+
+    /**
+     * the index of {@code {name}} in the route path, the first segment after '/' is 0
+     */
+    private static int segmentIndex(String path, String name) {
+        String[] segments = (path.startsWith("/") ? path.substring(1) : path).split("/");
+        String variable = "{" + name + "}";
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].equals(variable)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * convert the string value by the type of the parameter
+     */
+    private enum Converter {
+        STRING {
+            @Override
+            Object convert0(String value) {
+                return value;
+            }
+        },
+        INTEGER {
+            @Override
+            Object convert0(String value) {
+                return Integer.valueOf(value);
+            }
+        },
+        LONG {
+            @Override
+            Object convert0(String value) {
+                return Long.valueOf(value);
+            }
+        };
+
+        Object convert(String value) {
+            return value == null ? null : convert0(value);
+        }
+
+        abstract Object convert0(String value);
+
+        static Converter of(Class<?> type) {
+            if (type == Integer.class || type == int.class) {
+                return INTEGER;
+            }
+            if (type == Long.class || type == long.class) {
+                return LONG;
+            }
+            return STRING;
+        }
+    }
+}
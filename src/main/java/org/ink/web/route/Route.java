@@ -6,6 +6,8 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.ink.aop.ChainType;
 import org.ink.aop.ProxyChain;
+import org.ink.security.Roles;
+import org.ink.web.metrics.RouteMetrics;
 import io.netty.handler.codec.http.HttpMethod;
 
 import java.lang.reflect.Method;
@@ -36,14 +38,38 @@ public class Route {
 
     private boolean view = false;
 
+    //run on the worker pool, not the event loop
+    private boolean blocking = false;
+
+    //how the body is read before the route runs
+    private BodyMode bodyMode = BodyMode.NONE;
+
+    //the max length of the body
+    private long maxContentLength = Long.MAX_VALUE;
+
     //if has @Role annotation, contains roles
     private Set<String> roles;
 
+    //the bits of the roles, see Roles
+    private long roleMask;
+
+    //the counts and the times of the requests
+    private final RouteMetrics metrics = new RouteMetrics();
+
+    public RouteMetrics metrics() {
+        return metrics;
+    }
+
     public void addRolePermit(String roleName) {
         if (roles == null) {
             roles = new HashSet<>();
         }
         roles.add(roleName);
+        roleMask |= Roles.register(roleName);
+    }
+
+    public long roleMask() {
+        return roleMask;
     }
 
     public void setView() {
@@ -54,12 +80,36 @@ public class Route {
         return view;
     }
 
+    public boolean blocking() {
+        return blocking;
+    }
+
+    public void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    public BodyMode bodyMode() {
+        return bodyMode;
+    }
+
+    public void setBodyMode(BodyMode bodyMode) {
+        this.bodyMode = bodyMode;
+    }
+
+    public long maxContentLength() {
+        return maxContentLength;
+    }
+
+    public void setMaxContentLength(long maxContentLength) {
+        this.maxContentLength = maxContentLength;
+    }
+
     public boolean containsRole(String roleName) {
         return roles != null && roles.contains(roleName);
     }
 
     public boolean containsRolesAll(List<String> roleNames) {
-        return roles != null && roles.containsAll(roleNames);
+        return roles != null && Roles.permits(roleMask, Roles.maskOf(roleNames));
     }
 
     //Aop的前置路由
@@ -97,15 +147,27 @@ public class Route {
         this.method = method;
     }
 
-    public Object[] getParamters() {
-        return paramters;
+    //compiled from the parameters of the method
+    private ParameterBinder[] binders;
+
+    //calls the method on the object
+    private MethodInvoker invoker;
+
+    public MethodInvoker invoker() {
+        return invoker;
     }
 
-    public void setParamters(Object[] paramters) {
-        this.paramters = paramters;
+    public void setInvoker(MethodInvoker invoker) {
+        this.invoker = invoker;
     }
 
-    private Object[] paramters;
+    public ParameterBinder[] binders() {
+        return binders;
+    }
+
+    public void setBinders(ParameterBinder[] binders) {
+        this.binders = binders;
+    }
 
     public Route(Object object, Method method, HttpMethod httpMethod, String path) {
         this.object = object;
@@ -158,7 +220,6 @@ public class Route {
                 .append(path, route.path)
                 .append(beforeProxyChain, route.beforeProxyChain)
                 .append(afterProxyChain, route.afterProxyChain)
-                .append(paramters, route.paramters)
                 .isEquals();
     }
 
@@ -172,7 +233,6 @@ public class Route {
                 .append(security)
                 .append(beforeProxyChain)
                 .append(afterProxyChain)
-                .append(paramters)
                 .toHashCode();
     }
 
@@ -186,7 +246,22 @@ public class Route {
                 .append("security", security)
                 .append("beforeProxyChain", beforeProxyChain)
                 .append("afterProxyChain", afterProxyChain)
-                .append("paramters", paramters)
                 .toString();
     }
+
+    /**
+     * how the body of the request is read
+     *
+     * @see org.ink.server.netty.RouteAggregator
+     */
+    public enum BodyMode {
+        //no parameter uses the body, the route runs once the headers arrive
+        NONE,
+        //the body is kept in memory
+        AGGREGATE,
+        //the form or the multipart body is decoded to the disk while it arrives
+        MULTIPART,
+        //the body is kept as it is, in memory if small, or on the disk
+        RAW
+    }
 }
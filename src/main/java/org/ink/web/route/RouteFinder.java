@@ -5,57 +5,100 @@ import io.netty.handler.codec.http.HttpMethod;
 import org.ink.security.exception.UnauthorizedException;
 import org.ink.web.annotation.PathVariable;
 import org.ink.web.http.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
+ * find the route of the request
+ *
+ * routes are kept in one trie for every http method,
+ * the trie is built in {@link RouteRegister#registerRoute}
+ *
  * @author zhuyichen 2017-7-12
+ * @see org.ink.web.route.RouteNode
  */
 public class RouteFinder {
 
-    //保存路由参数的Pattern和路由的map
-    private static final Map<Pattern, Route> routeMap = new HashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(RouteFinder.class);
 
+    //http method -> root of the trie
+    private static final Map<HttpMethod, RouteNode> roots = new HashMap<>();
 
-    //根据参数进行正则替换
-    public static Pattern pathCompiler(String path, Method method) {
-        Parameter[] parameters = method.getParameters();
-        for (Parameter parameter : parameters) {
-            if (parameter.getAnnotations().length == 0) {
-                continue;
-            }
-            Annotation annotation = parameter.getAnnotations()[0];
-            if (annotation instanceof PathVariable) {
-                //如果是字符串
-                if (parameter.getType() == String.class) {
-                    path = path.replace("{" + parameter.getName() + "}", "[0-9\\d\\D]*");
-                }
-                //如果是数字
-                else if (parameter.getType() == Integer.class
-                        || parameter.getType() == Long.class) {
-                    path = path.replace("{" + parameter.getName() + "}", "[0-9]*");
-                }
+    //all the routes in the order they are added
+    private static final List<Route> routes = new ArrayList<>();
+
+
+    /**
+     * add one route into the trie of its http method
+     */
+    public static void addRouter(Route route) {
+        RouteNode node = roots.computeIfAbsent(route.httpMethod(), m -> new RouteNode());
+
+        String path = route.path();
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.endsWith("/") && path.length() > start ? path.length() - 1 : path.length();
 
+        while (start < end) {
+            int segmentEnd = path.indexOf('/', start);
+            if (segmentEnd == -1 || segmentEnd > end) {
+                segmentEnd = end;
             }
+            String segment = path.substring(start, segmentEnd);
+            node = node.child(segment, segmentType(segment, route));
+            start = segmentEnd + 1;
         }
-        return Pattern.compile(path);
+
+        if (!node.setRoute(route)) {
+            log.error("route {} [{}] conflicts with {}", route.httpMethod(), route.path(), node.route().getMethod());
+            return;
+        }
+        routes.add(route);
+    }
+
+    /**
+     * @return all the routes in the tries
+     */
+    public static List<Route> routes() {
+        return Collections.unmodifiableList(routes);
     }
 
-    public static void addRouter(Pattern pattern, Route route) {
-        routeMap.put(pattern, route);
+    //根据@PathVariable的类型决定节点的类型
+    private static RouteNode.SegmentType segmentType(String segment, Route route) {
+        if (segment.length() < 2 || segment.charAt(0) != '{' || segment.charAt(segment.length() - 1) != '}') {
+            return RouteNode.SegmentType.STATIC;
+        }
+        String name = segment.substring(1, segment.length() - 1);
+        for (Parameter parameter : route.getMethod().getParameters()) {
+            if (parameter.getAnnotation(PathVariable.class) != null && parameter.getName().equals(name)) {
+                if (parameter.getType() == Integer.class) {
+                    return RouteNode.SegmentType.INTEGER;
+                }
+                if (parameter.getType() == Long.class) {
+                    return RouteNode.SegmentType.LONG;
+                }
+            }
+        }
+        return RouteNode.SegmentType.STRING;
     }
 
 
     public static Route findRoute(Request request) throws UnauthorizedException {
+        return findRoute(request.method(), request.uri());
+    }
 
-        String path = request.uri();
-        HttpMethod method = request.method();
+    public static Route findRoute(HttpMethod method, String path) {
 
+        RouteNode root = roots.get(method);
+        if (root == null) {
+            return null;
+        }
 
         //如果有params，找到问号的位置
         int splitIndex = path.indexOf('?');
@@ -64,27 +107,13 @@ public class RouteFinder {
             splitIndex = path.length();
         }
         //如果最后一个字符是'/',去掉
-        if (path.charAt(splitIndex-1) == '/') {
+        if (splitIndex > 0 && path.charAt(splitIndex - 1) == '/') {
             splitIndex--;
         }
 
-        //遍历map
-        for (Pattern pattern : routeMap.keySet()) {
-            //如果找到uri匹配的
-            if (pattern.matcher(path.substring(0, splitIndex)).matches()) {
-
-                Route route = routeMap.get(pattern);
-
-                //如果请求方式一样
-                if (route.httpMethod().equals(method)) {
-
-                    return route;
-                }
-            }
-        }
-        return null;
+        int start = path.startsWith("/") ? 1 : 0;
+        return root.match(path, start, splitIndex);
     }
 
 
 }
-
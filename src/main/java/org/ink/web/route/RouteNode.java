@@ -0,0 +1,258 @@
+package org.ink.web.route;
+
+/**
+ * one node of the route trie
+ *
+ * every node stands for one segment of the path (the text between two '/'),
+ * a static segment is stored in the open addressing table of its parent,
+ * a {param} segment is stored in the typed child of its parent.
+ *
+ * when matching, static segment is tried first, then Integer, Long and String,
+ * so {@code /user/me} wins {@code /user/{id}}
+ *
+ * the match works on the index of the request uri,
+ * no regex and no substring is used
+ *
+ * @author zhuyichen
+ * @see org.ink.web.route.RouteFinder
+ */
+final class RouteNode {
+
+    /**
+     * the type of the segment
+     */
+    enum SegmentType {
+        STATIC,
+        INTEGER,
+        LONG,
+        STRING
+    }
+
+    private static final int INITIAL_TABLE_SIZE = 4;
+
+    private final String segment;
+    private final int hash;
+    private final SegmentType type;
+
+    //static children, open addressing by hash of the segment
+    private RouteNode[] statics;
+    private int staticCount;
+
+    //typed {param} children
+    private RouteNode integerChild;
+    private RouteNode longChild;
+    private RouteNode stringChild;
+
+    //the route which ends at this node
+    private Route route;
+
+    RouteNode() {
+        this(null, SegmentType.STATIC);
+    }
+
+    private RouteNode(String segment, SegmentType type) {
+        this.segment = segment;
+        this.type = type;
+        this.hash = segment == null ? 0 : spread(segment.hashCode());
+    }
+
+    Route route() {
+        return route;
+    }
+
+    /**
+     * add a child of the segment type, or return the existing one
+     */
+    RouteNode child(String segment, SegmentType type) {
+        switch (type) {
+            case INTEGER:
+                if (integerChild == null) {
+                    integerChild = new RouteNode(null, type);
+                }
+                return integerChild;
+            case LONG:
+                if (longChild == null) {
+                    longChild = new RouteNode(null, type);
+                }
+                return longChild;
+            case STRING:
+                if (stringChild == null) {
+                    stringChild = new RouteNode(null, type);
+                }
+                return stringChild;
+            default:
+                RouteNode node = staticChild(segment, 0, segment.length(), spread(segment.hashCode()));
+                if (node == null) {
+                    node = new RouteNode(segment, type);
+                    putStatic(node);
+                }
+                return node;
+        }
+    }
+
+    /**
+     * set the route at this node
+     *
+     * @return false if there is already a route here
+     */
+    boolean setRoute(Route route) {
+        if (this.route != null) {
+            return false;
+        }
+        this.route = route;
+        return true;
+    }
+
+    /**
+     * find the route of path[start, end)
+     *
+     * @param path  the request uri
+     * @param start the index after '/'
+     * @param end   the end of the path, without query string and the last '/'
+     */
+    Route match(String path, int start, int end) {
+        if (start >= end) {
+            return route;
+        }
+
+        int segmentEnd = path.indexOf('/', start);
+        if (segmentEnd == -1 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+
+        Route result;
+        if (statics != null) {
+            RouteNode node = staticChild(path, start, segmentEnd, regionHash(path, start, segmentEnd));
+            if (node != null && (result = node.match(path, segmentEnd + 1, end)) != null) {
+                return result;
+            }
+        }
+
+        if (integerChild != null || longChild != null) {
+            int digits = digits(path, start, segmentEnd);
+            if (digits > 0) {
+                if (integerChild != null && fitsInteger(path, start, digits)
+                        && (result = integerChild.match(path, segmentEnd + 1, end)) != null) {
+                    return result;
+                }
+                if (longChild != null && fitsLong(path, start, digits)
+                        && (result = longChild.match(path, segmentEnd + 1, end)) != null) {
+                    return result;
+                }
+            }
+        }
+
+        if (stringChild != null && segmentEnd > start) {
+            return stringChild.match(path, segmentEnd + 1, end);
+        }
+        return null;
+    }
+
+    private RouteNode staticChild(String path, int start, int end, int hash) {
+        if (statics == null) {
+            return null;
+        }
+        int length = end - start;
+        int mask = statics.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            RouteNode node = statics[i];
+            if (node == null) {
+                return null;
+            }
+            if (node.hash == hash
+                    && node.segment.length() == length
+                    && path.regionMatches(start, node.segment, 0, length)) {
+                return node;
+            }
+        }
+    }
+
+    private void putStatic(RouteNode node) {
+        if (statics == null) {
+            statics = new RouteNode[INITIAL_TABLE_SIZE];
+        }
+        //keep the load factor under 0.5
+        else if ((staticCount + 1) * 2 > statics.length) {
+            RouteNode[] old = statics;
+            statics = new RouteNode[old.length * 2];
+            for (RouteNode n : old) {
+                if (n != null) {
+                    insert(statics, n);
+                }
+            }
+        }
+        insert(statics, node);
+        staticCount++;
+    }
+
+    private static void insert(RouteNode[] table, RouteNode node) {
+        int mask = table.length - 1;
+        int i = node.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = node;
+    }
+
+    /**
+     * the same as {@code path.substring(start, end).hashCode()}
+     */
+    private static int regionHash(String path, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + path.charAt(i);
+        }
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the count of the digits, -1 if there is any other char
+     */
+    private static int digits(String path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return end - start;
+    }
+
+    private static boolean fitsInteger(String path, int start, int digits) {
+        return fits(path, start, digits, "2147483647");
+    }
+
+    private static boolean fitsLong(String path, int start, int digits) {
+        return fits(path, start, digits, "9223372036854775807");
+    }
+
+    /**
+     * compare the digits with the max value char by char
+     */
+    private static boolean fits(String path, int start, int digits, String max) {
+        //skip leading zeros
+        while (digits > 1 && path.charAt(start) == '0') {
+            start++;
+            digits--;
+        }
+        if (digits != max.length()) {
+            return digits < max.length();
+        }
+        for (int i = 0; i < digits; i++) {
+            char c = path.charAt(start + i);
+            if (c != max.charAt(i)) {
+                return c < max.charAt(i);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return type == SegmentType.STATIC ? String.valueOf(segment) : "{" + type + "}";
+    }
+}
@@ -1,5 +1,6 @@
 package org.ink.web.route;
 
+import org.ink.WebConfig;
 import org.ink.ioc.bean.BeanDefinition;
 import org.ink.security.annotation.Role;
 import org.ink.web.annotation.*;
@@ -22,6 +23,15 @@ public class RouteRegister {
 
     private static final Logger log = LoggerFactory.getLogger(RouteRegister.class);
 
+    //the max length of the body kept in memory, 10M by default
+    private static final long MAX_CONTENT_LENGTH = WebConfig.getLongConfig("max_content_length", 10 * 1024 * 1024);
+
+    //the max length of the body streamed to the disk, 1G by default
+    private static final long MAX_STREAM_LENGTH = WebConfig.getLongConfig("max_stream_length", 1024 * 1024 * 1024);
+
+    //all routes run on the worker pool if execution_mode = worker
+    private static final boolean WORKER_MODE = "worker".equalsIgnoreCase(WebConfig.getConfig("execution_mode"));
+
     public static List<Route> registerRoute(Map<String, BeanDefinition> beanDefinitionMap) {
 
         log.info("starting configure route...");
@@ -39,7 +49,6 @@ public class RouteRegister {
                 Annotation[] annotations = method.getDeclaredAnnotations();
 
                 Route route = null;
-                String path = "";
 //                boolean isSecurity = false;
 //                boolean isView = false;
                 for (Annotation annotation : annotations) {
@@ -49,19 +58,15 @@ public class RouteRegister {
 
                     if (annotation instanceof GET) {
                         route = new Route(beanDefinition.getObject(), method, HttpMethod.GET, ((GET) annotation).value());
-                        path = ((GET) annotation).value();
                     }
                     else if(annotation instanceof POST) {
                         route = new Route(beanDefinition.getObject(), method, HttpMethod.POST, ((POST) annotation).value());
-                        path = ((POST) annotation).value();
                     }
                     else if(annotation instanceof PUT) {
                         route = new Route(beanDefinition.getObject(), method, HttpMethod.PUT, ((PUT) annotation).value());
-                        path = ((PUT) annotation).value();
                     }
                     else if(annotation instanceof DELETE) {
                         route = new Route(beanDefinition.getObject(), method, HttpMethod.DELETE, ((DELETE) annotation).value());
-                        path = ((DELETE) annotation).value();
                     }
                 }
 
@@ -82,6 +87,7 @@ public class RouteRegister {
                             route.setView();
                         }
                     }
+                    route.setBlocking(blocking(method));
                 }
 
                 //如果已经有这个路由
@@ -90,8 +96,11 @@ public class RouteRegister {
                 }
                 else {
                     routes.add(route);
-                    route.setParamters(new Object[method.getParameterCount()]);
-                    RouteFinder.addRouter(RouteFinder.pathCompiler(path, method), route);
+                    route.setBinders(ParameterBinders.compile(route));
+                    route.setBodyMode(ParameterBinders.bodyMode(route));
+                    route.setMaxContentLength(contentLimit(method, route.bodyMode()));
+                    route.setInvoker(MethodInvokers.create(route.getObject(), method));
+                    RouteFinder.addRouter(route);
                     if (route.security()) {
                         log.info("mapping {} [{}] with roles [{}]", route.httpMethod(), route.path(), method.getAnnotation(Role.class).value());
                     }
@@ -104,6 +113,36 @@ public class RouteRegister {
         return routes;
     }
 
+    //@Blocking on the method, then on the class, then the config
+    private static boolean blocking(Method method) {
+        Blocking blocking = method.getAnnotation(Blocking.class);
+        if (blocking == null) {
+            blocking = method.getDeclaringClass().getAnnotation(Blocking.class);
+        }
+        return blocking == null ? WORKER_MODE : blocking.value();
+    }
+
+    //@ContentLimit on the method, then on the class,
+    //then the config for the body in memory or on the disk, the body dropped is not limited
+    private static long contentLimit(Method method, Route.BodyMode bodyMode) {
+        ContentLimit limit = method.getAnnotation(ContentLimit.class);
+        if (limit == null) {
+            limit = method.getDeclaringClass().getAnnotation(ContentLimit.class);
+        }
+        if (limit != null) {
+            return limit.value();
+        }
+        switch (bodyMode) {
+            case AGGREGATE:
+                return MAX_CONTENT_LENGTH;
+            case MULTIPART:
+            case RAW:
+                return MAX_STREAM_LENGTH;
+            default:
+                return Long.MAX_VALUE;
+        }
+    }
+
 
 
 }
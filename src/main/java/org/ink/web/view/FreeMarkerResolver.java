@@ -1,34 +1,99 @@
 package org.ink.web.view;
 
+import freemarker.cache.StrongCacheStorage;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import org.ink.WebConfig;
+import org.ink.web.http.ByteBufWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.PrintWriter;
-import java.io.RandomAccessFile;
+import java.util.Collections;
 
+/**
+ * render the templates under {@code template/} into the buffers
+ *
+ * all the templates are parsed once by {@link #configure()} at startup
+ * and never dropped from the cache,
+ * the files are checked again only after {@code template_update_delay} milliseconds,
+ * by default never, so the view never touches the filesystem
+ *
+ * one configuration is shared by all the channels
+ */
 public class FreeMarkerResolver implements TemplateResolver {
 
-    private final Configuration cfg = new Configuration(Configuration.VERSION_2_3_23);
     private static final Logger logger = LoggerFactory.getLogger(FreeMarkerResolver.class);
 
-    public FreeMarkerResolver() {
+    private static final FreeMarkerResolver INSTANCE = new FreeMarkerResolver();
+
+    private final Configuration cfg = new Configuration(Configuration.VERSION_2_3_23);
+
+    private final File directory = new File(WebConfig.PATH + "template");
+
+    private FreeMarkerResolver() {
+        cfg.setDefaultEncoding("UTF-8");
+        cfg.setCacheStorage(new StrongCacheStorage());
+        cfg.setTemplateUpdateDelayMilliseconds(WebConfig.getLongConfig("template_update_delay", Long.MAX_VALUE));
+        //no name_en_US.ftl is looked for
+        cfg.setLocalizedLookup(false);
         try {
-            cfg.setDirectoryForTemplateLoading(new File(WebConfig.PATH + "template"));
+            cfg.setDirectoryForTemplateLoading(directory);
         } catch (Exception e) {
-            logger.info("template path {} not found", WebConfig.PATH+"/template");
+            logger.info("template path {} not found", directory);
+        }
+    }
+
+    public static FreeMarkerResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * parse all the templates into the cache
+     */
+    public static void configure() {
+        if (!INSTANCE.directory.isDirectory()) {
+            return;
+        }
+        int count = INSTANCE.preload(INSTANCE.directory, "");
+        logger.info("{} templates loaded", count);
+    }
+
+    private int preload(File dir, String prefix) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                count += preload(file, name + "/");
+                continue;
+            }
+            try {
+                cfg.getTemplate(name);
+                count++;
+            } catch (Exception e) {
+                logger.warn("can not load template {}: {}", name, e.getMessage());
+            }
         }
+        return count;
     }
 
-    public RandomAccessFile resolve(String name, Model model) throws Exception {
+    @Override
+    public ByteBuf resolve(String name, Model model, ByteBufAllocator alloc) throws Exception {
         Template template = cfg.getTemplate(name);
-        File file = new File(template.getName());
-        PrintWriter writer = new PrintWriter(file);
-        template.process(model.getModel(), writer);
-        return new RandomAccessFile(file, "r");
+        ByteBuf page = alloc.ioBuffer();
+        try (ByteBufWriter writer = new ByteBufWriter(page)) {
+            template.process(model == null ? Collections.emptyMap() : model.getModel(), writer);
+        } catch (Exception e) {
+            page.release();
+            throw e;
+        }
+        return page;
     }
 
 }
@@ -1,9 +1,15 @@
 package org.ink.web.view;
 
-import java.io.RandomAccessFile;
-import java.util.Map;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 
 public interface TemplateResolver {
 
-    RandomAccessFile resolve(String name, Model model) throws Exception;
+    /**
+     * render the template with the model
+     *
+     * @param alloc the buffer of the page is taken from it
+     * @return the page, released by the caller
+     */
+    ByteBuf resolve(String name, Model model, ByteBufAllocator alloc) throws Exception;
 }
@@ -0,0 +1,132 @@
+package org.ink.security;
+
+import org.ink.security.user.User;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * the tokens changed by the client, signed by another key, or out of time are not accepted
+ *
+ * @author zhuyichen
+ */
+public class JwtUtilTest {
+
+    private static final String KEY = "the key of the test";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final String HEADER = "{\"alg\":\"HS256\",\"typ\":\"JWT\"}";
+
+    @BeforeClass
+    public static void setKey() {
+        JwtUtil.setKey(KEY);
+    }
+
+    private static long seconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * a token made by hand, as the client could
+     */
+    private static String token(String key, String header, String claims) throws Exception {
+        String content = encode(header) + '.' + encode(claims);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return content + '.' + ENCODER.encodeToString(mac.doFinal(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String encode(String json) {
+        return ENCODER.encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String claims(String user, long exp) {
+        return "{\"sub\":\"" + user + "\",\"roles\":[\"admin\"],\"exp\":" + exp + "}";
+    }
+
+    @Test
+    public void roundTrip() {
+        String token = JwtUtil.generateToken(new User("tom", "secret", Arrays.asList("admin", "user")));
+        User user = JwtUtil.getUserFromToken(token);
+        assertNotNull(user);
+        assertEquals("tom", user.getUserName());
+        assertNull(user.getPassword());
+        assertEquals(Arrays.asList("admin", "user"), user.getRoles());
+        //from the cache the second time
+        assertEquals("tom", JwtUtil.getUserFromToken(token).getUserName());
+    }
+
+    @Test
+    public void sameKeyByHand() throws Exception {
+        String token = token(KEY, HEADER, claims("jerry", seconds() + 60));
+        assertEquals("jerry", JwtUtil.getUserFromToken(token).getUserName());
+    }
+
+    @Test
+    public void changedClaims() {
+        String token = JwtUtil.generateToken(new User("tom", null, Arrays.asList("user")));
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + '.' + encode(claims("tom", seconds() + 60)) + '.' + parts[2];
+        assertNull(JwtUtil.getUserFromToken(forged));
+    }
+
+    @Test
+    public void changedSignature() {
+        String token = JwtUtil.generateToken(new User("tom", null, Arrays.asList("user")));
+        char last = token.charAt(token.length() - 1);
+        String forged = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+        assertNull(JwtUtil.getUserFromToken(forged));
+        assertNull(JwtUtil.getUserFromToken(token.substring(0, token.lastIndexOf('.') + 1)));
+        assertNull(JwtUtil.getUserFromToken(token + "%%"));
+    }
+
+    @Test
+    public void unusedBitsOfTheSignature() {
+        //the 256 bits of the signature leave the last 2 bits of the last char unused
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        String token = JwtUtil.generateToken(new User("tom", null, Arrays.asList("user")));
+        int last = alphabet.indexOf(token.charAt(token.length() - 1));
+        for (int bits = 1; bits < 4; bits++) {
+            String forged = token.substring(0, token.length() - 1) + alphabet.charAt(last ^ bits);
+            assertNull(JwtUtil.getUserFromToken(forged));
+        }
+    }
+
+    @Test
+    public void otherKey() throws Exception {
+        assertNull(JwtUtil.getUserFromToken(token("another key", HEADER, claims("tom", seconds() + 60))));
+    }
+
+    @Test
+    public void otherHeader() throws Exception {
+        //the alg of the client is never used
+        assertNull(JwtUtil.getUserFromToken(token(KEY, "{\"alg\":\"none\",\"typ\":\"JWT\"}", claims("tom", seconds() + 60))));
+        assertNull(JwtUtil.getUserFromToken(token(KEY, "{\"typ\":\"JWT\",\"alg\":\"HS256\"}", claims("tom", seconds() + 60))));
+        String unsigned = encode("{\"alg\":\"none\"}") + '.' + encode(claims("tom", seconds() + 60)) + '.';
+        assertNull(JwtUtil.getUserFromToken(unsigned));
+    }
+
+    @Test
+    public void expired() throws Exception {
+        assertNull(JwtUtil.getUserFromToken(token(KEY, HEADER, claims("tom", seconds() - 1))));
+        assertNull(JwtUtil.getUserFromToken(token(KEY, HEADER, "{\"sub\":\"tom\"}")));
+    }
+
+    @Test
+    public void notAToken() throws Exception {
+        assertNull(JwtUtil.getUserFromToken(""));
+        assertNull(JwtUtil.getUserFromToken("abc"));
+        assertNull(JwtUtil.getUserFromToken(encode(HEADER) + ".abc"));
+        assertNull(JwtUtil.getUserFromToken(token(KEY, HEADER, "[1, 2")));
+    }
+}
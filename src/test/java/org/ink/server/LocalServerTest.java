@@ -0,0 +1,188 @@
+package org.ink.server;
+
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import org.ink.ioc.bean.BeanDefinition;
+import org.ink.web.annotation.Blocking;
+import org.ink.web.annotation.GET;
+import org.ink.web.http.ErrorResponses;
+import org.ink.web.route.RouteRegister;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the whole server over the local transport,
+ * the blocking routes on the worker pool, the pool full, and the order of the pipelined responses
+ *
+ * the pool is set in the app.properties of the tests, 1 worker and 1 waiting task
+ *
+ * @author zhuyichen
+ */
+public class LocalServerTest {
+
+    private static final String ADDRESS = "ink-local-test";
+
+    public static class TestController {
+
+        //the requests waiting in /ls/wait
+        static volatile CountDownLatch entered;
+        static volatile CountDownLatch release;
+
+        @GET("/ls/fast")
+        public Object fast() {
+            return "fast";
+        }
+
+        @Blocking
+        @GET("/ls/thread")
+        public Object thread() {
+            return Thread.currentThread().getName();
+        }
+
+        @Blocking
+        @GET("/ls/slow")
+        public Object slow() throws InterruptedException {
+            Thread.sleep(200);
+            return "slow";
+        }
+
+        @Blocking
+        @GET("/ls/wait")
+        public Object waitForRelease() throws InterruptedException {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return "released";
+        }
+
+        @Blocking
+        @GET("/ls/error")
+        public Object error() {
+            throw new AssertionError("thrown on the worker");
+        }
+    }
+
+    private static InkServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        server = new InkServer(ADDRESS);
+        server.setList(RouteRegister.registerRoute(Collections.singletonMap("testController",
+                new BeanDefinition(TestController.class, new TestController()))));
+        server.bind();
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    private static String body(FullHttpResponse response) {
+        try {
+            return response.content().toString(CharsetUtil.UTF_8);
+        } finally {
+            response.release();
+        }
+    }
+
+    private static FullHttpResponse get(LocalClient client, String uri) throws Exception {
+        return client.get(uri).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void blockingRouteRunsOnTheWorker() throws Exception {
+        try (LocalClient client = new LocalClient(ADDRESS)) {
+            FullHttpResponse response = get(client, "/ls/thread");
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertTrue(body(response).contains("ink-worker-"));
+        }
+    }
+
+    @Test
+    public void fullPoolAnswers503() throws Exception {
+        TestController.entered = new CountDownLatch(1);
+        TestController.release = new CountDownLatch(1);
+        try (LocalClient running = new LocalClient(ADDRESS);
+             LocalClient first = new LocalClient(ADDRESS);
+             LocalClient second = new LocalClient(ADDRESS)) {
+            CompletableFuture<FullHttpResponse> waiting = running.get("/ls/wait");
+            assertTrue(TestController.entered.await(10, TimeUnit.SECONDS));
+
+            //the only worker is busy, one of them waits in the queue, the other one is answered at once
+            CompletableFuture<FullHttpResponse> a = first.get("/ls/thread");
+            CompletableFuture<FullHttpResponse> b = second.get("/ls/thread");
+            CompletableFuture.anyOf(a, b).get(10, TimeUnit.SECONDS);
+            CompletableFuture<FullHttpResponse> rejected = a.isDone() ? a : b;
+            CompletableFuture<FullHttpResponse> queued = a.isDone() ? b : a;
+            FullHttpResponse response = rejected.get();
+            assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.status());
+            response.release();
+
+            TestController.release.countDown();
+            response = waiting.get(10, TimeUnit.SECONDS);
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertTrue(body(response).contains("released"));
+            response = queued.get(10, TimeUnit.SECONDS);
+            assertEquals(HttpResponseStatus.OK, response.status());
+            response.release();
+
+            //the connection rejected goes on
+            response = get(rejected == a ? first : second, "/ls/fast");
+            assertEquals(HttpResponseStatus.OK, response.status());
+            response.release();
+        }
+    }
+
+    @Test
+    public void pipelinedResponsesKeepTheOrder() throws Exception {
+        try (LocalClient client = new LocalClient(ADDRESS)) {
+            //the fast ones arrive while the slow one runs on the worker, they wait for it
+            List<CompletableFuture<FullHttpResponse>> futures = new ArrayList<>();
+            futures.add(client.get("/ls/slow"));
+            futures.add(client.get("/ls/fast"));
+            futures.add(client.get("/ls/thread"));
+            futures.add(client.get("/ls/fast"));
+
+            List<String> bodies = new ArrayList<>();
+            for (CompletableFuture<FullHttpResponse> future : futures) {
+                FullHttpResponse response = future.get(10, TimeUnit.SECONDS);
+                assertEquals(HttpResponseStatus.OK, response.status());
+                bodies.add(body(response));
+            }
+            assertTrue(bodies.get(0).contains("slow"));
+            assertTrue(bodies.get(1).contains("fast"));
+            assertTrue(bodies.get(2).contains("ink-worker-"));
+            assertTrue(bodies.get(3).contains("fast"));
+        }
+    }
+
+    @Test
+    public void errorOnTheWorker() throws Exception {
+        long rejected = ErrorResponses.rejected(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        try (LocalClient client = new LocalClient(ADDRESS)) {
+            CompletableFuture<FullHttpResponse> error = client.get("/ls/error");
+            CompletableFuture<FullHttpResponse> next = client.get("/ls/fast");
+
+            FullHttpResponse response = error.get(10, TimeUnit.SECONDS);
+            assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status());
+            response.release();
+            //the channel is resumed after the error
+            response = next.get(10, TimeUnit.SECONDS);
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertTrue(body(response).contains("fast"));
+        }
+        //the route ran, it is not rejected
+        assertEquals(rejected, ErrorResponses.rejected(HttpResponseStatus.INTERNAL_SERVER_ERROR));
+    }
+}
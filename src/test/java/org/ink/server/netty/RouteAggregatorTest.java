@@ -0,0 +1,274 @@
+package org.ink.server.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import org.ink.web.annotation.FILE;
+import org.ink.web.annotation.RequestJson;
+import org.ink.web.annotation.RequestParam;
+import org.ink.web.http.RoutedHttpRequest;
+import org.ink.web.route.ParameterBinders;
+import org.ink.web.route.Route;
+import org.ink.web.route.RouteFinder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * the body read the way the route needs,
+ * the body over the limit gets 413 and the connection is closed,
+ * the files on the disk are deleted with the request
+ *
+ * @author zhuyichen
+ */
+public class RouteAggregatorTest {
+
+    private static final String BOUNDARY = "ra-boundary";
+
+    public static class Controller {
+
+        public void none() {
+        }
+
+        public void json(@RequestJson Map body) {
+        }
+
+        public void upload(@FILE File file) {
+        }
+
+        public void raw(InputStream body) {
+        }
+
+        public void rawAndForm(InputStream body, @RequestParam String name) {
+        }
+    }
+
+    private static Route none;
+    private static Route json;
+    private static Route upload;
+    private static Route raw;
+
+    @BeforeClass
+    public static void addRoutes() {
+        none = add("none", "/ra/none", Long.MAX_VALUE);
+        json = add("json", "/ra/json", 16);
+        upload = add("upload", "/ra/upload", Long.MAX_VALUE);
+        raw = add("raw", "/ra/raw", 64 * 1024);
+    }
+
+    private static Route add(String name, String path, long limit) {
+        Route route = new Route(new Controller(), method(name), HttpMethod.POST, path);
+        route.setBodyMode(ParameterBinders.bodyMode(route));
+        route.setMaxContentLength(limit);
+        RouteFinder.addRouter(route);
+        return route;
+    }
+
+    private static Method method(String name) {
+        for (Method method : Controller.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static HttpRequest post(String path) {
+        return new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, path);
+    }
+
+    private static ByteBuf bytes(String s) {
+        return Unpooled.copiedBuffer(s, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    @Test
+    public void bodyModes() {
+        assertEquals(Route.BodyMode.NONE, none.bodyMode());
+        assertEquals(Route.BodyMode.AGGREGATE, json.bodyMode());
+        assertEquals(Route.BodyMode.MULTIPART, upload.bodyMode());
+        assertEquals(Route.BodyMode.RAW, raw.bodyMode());
+        try {
+            ParameterBinders.bodyMode(new Route(new Controller(), method("rawAndForm"), HttpMethod.POST, "/ra/both"));
+            fail("the form of the raw body is read");
+        } catch (IllegalStateException expected) {
+            //the raw body is not decoded
+        }
+    }
+
+    @Test
+    public void contentLengthOverTheLimit() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RouteAggregator(), new HttpRequestHandler());
+        HttpRequest request = post("/ra/json");
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, 17);
+        request.headers().set(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE);
+        channel.writeInbound(request);
+
+        FullHttpResponse response = channel.readOutbound();
+        //no 100 Continue before
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, response.status());
+        response.release();
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void chunkedBodyCrossingTheLimit() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RouteAggregator(), new HttpRequestHandler());
+        HttpRequest request = post("/ra/raw");
+        request.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+        channel.writeInbound(request,
+                new DefaultHttpContent(Unpooled.wrappedBuffer(bytes(40 * 1024))),
+                new DefaultHttpContent(Unpooled.wrappedBuffer(bytes(40 * 1024))),
+                LastHttpContent.EMPTY_LAST_CONTENT);
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, response.status());
+        response.release();
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void noneRouteGoesOnWithTheHeaders() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RouteAggregator());
+        HttpRequest request = post("/ra/none");
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, 5);
+        request.headers().set(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE);
+        channel.writeInbound(request);
+
+        //before the body arrives, and the client is not asked for the body
+        RoutedHttpRequest routed = channel.readInbound();
+        assertNotNull(routed);
+        assertSame(none, routed.route());
+        assertNull(routed.rejected());
+        assertEquals(0, routed.content().readableBytes());
+        assertNull(channel.readOutbound());
+        routed.release();
+
+        //the body is dropped
+        channel.writeInbound(new DefaultLastHttpContent(bytes("hello")));
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void continueForTheBodyRead() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RouteAggregator());
+        HttpRequest request = post("/ra/json");
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, 2);
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        request.headers().set(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE);
+        channel.writeInbound(request);
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.CONTINUE, response.status());
+        response.release();
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(new DefaultLastHttpContent(bytes("{}")));
+        RoutedHttpRequest routed = channel.readInbound();
+        assertSame(json, routed.route());
+        assertFalse(routed.headers().contains(HttpHeaderNames.EXPECT));
+        assertEquals("{}", routed.content().toString(StandardCharsets.UTF_8));
+        routed.release();
+        channel.finish();
+    }
+
+    @Test
+    public void multipartUploadOnTheDisk() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RouteAggregator());
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "\r\n"
+                + "hello\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        HttpRequest request = post("/ra/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + BOUNDARY);
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, body.length());
+        channel.writeInbound(request, new DefaultHttpContent(bytes(body.substring(0, 40))),
+                new DefaultLastHttpContent(bytes(body.substring(40))));
+
+        RoutedHttpRequest routed = channel.readInbound();
+        assertSame(upload, routed.route());
+        FileUpload file = (FileUpload) routed.decoder().getBodyHttpData("file");
+        assertEquals("a.txt", file.getFilename());
+        assertFalse(file.isInMemory());
+        File onDisk = file.getFile();
+        assertEquals("hello", new String(Files.readAllBytes(onDisk.toPath()), StandardCharsets.UTF_8));
+
+        routed.release();
+        assertFalse(onDisk.exists());
+        channel.finish();
+    }
+
+    @Test
+    public void rawBodyInMemory() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RouteAggregator());
+        HttpRequest request = post("/ra/raw");
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, 5);
+        channel.writeInbound(request, new DefaultLastHttpContent(bytes("hello")));
+
+        RoutedHttpRequest routed = channel.readInbound();
+        FileUpload body = routed.rawBody();
+        assertTrue(body.isInMemory());
+        assertEquals("hello", body.getString(StandardCharsets.UTF_8));
+        routed.release();
+        channel.finish();
+    }
+
+    @Test
+    public void rawBodyOnTheDisk() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RouteAggregator());
+        byte[] bytes = bytes(32 * 1024);
+        HttpRequest request = post("/ra/raw");
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+        channel.writeInbound(request,
+                new DefaultHttpContent(Unpooled.wrappedBuffer(bytes, 0, 1000)),
+                new DefaultLastHttpContent(Unpooled.wrappedBuffer(bytes, 1000, bytes.length - 1000)));
+
+        RoutedHttpRequest routed = channel.readInbound();
+        FileUpload body = routed.rawBody();
+        assertFalse(body.isInMemory());
+        File onDisk = body.getFile();
+        assertArrayEquals(bytes, Files.readAllBytes(onDisk.toPath()));
+
+        routed.release();
+        assertFalse(onDisk.exists());
+        channel.finish();
+    }
+}
@@ -0,0 +1,174 @@
+package org.ink.web.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the frames read from a peer, without session_replication_key
+ * a frame cut off waits for the rest, a broken or too long one closes the connection
+ *
+ * @author zhuyichen
+ */
+public class ReplicatedSessionStoreTest {
+
+    private static final int MAC_LENGTH = 32;
+
+    private static ReplicatedSessionStore store;
+
+    private final SessionRecords.Encoder encoder = new SessionRecords.Encoder();
+
+    @BeforeClass
+    public static void setUp() {
+        store = new ReplicatedSessionStore();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        SessionManager.remove("0AR1");
+        SessionManager.remove("0AR2");
+        SessionManager.remove("0AR3");
+        SessionManager.remove("0AS1");
+        SessionManager.remove("0AS2");
+    }
+
+    private EmbeddedChannel channel() {
+        return new EmbeddedChannel(store.initializer(null));
+    }
+
+    private static HttpSession session(String id) {
+        HttpSession session = new HttpSession(id);
+        long now = System.currentTimeMillis();
+        session.setCreateTime(now);
+        session.touch(now);
+        return session;
+    }
+
+    /**
+     * the length, the HMAC which is not checked, then the records
+     */
+    private static ByteBuf frame(ByteBuf records) {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(MAC_LENGTH + records.readableBytes());
+        frame.writeZero(MAC_LENGTH);
+        frame.writeBytes(records);
+        return frame;
+    }
+
+    private static void addRecord(ByteBuf records, ByteBuffer record) {
+        records.writeInt(record.remaining());
+        records.writeBytes(record);
+    }
+
+    @Test
+    public void recordsAreApplied() {
+        HttpSession session = session("0AR1");
+        ByteBuf records = Unpooled.buffer();
+        addRecord(records, encoder.session(session));
+        addRecord(records, encoder.attribute(session, "name", "tom"));
+
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(frame(records));
+        assertTrue(channel.isOpen());
+        HttpSession applied = SessionManager.peek("0AR1");
+        assertNotNull(applied);
+        assertEquals("tom", applied.getAttribute("name"));
+        channel.finish();
+    }
+
+    @Test
+    public void remoteAccessDoesNotBlockTheSweep() throws InterruptedException {
+        //both idle for almost the timeout, in the same shard as the live sessions of the other tests, a before b
+        long old = System.currentTimeMillis() - SessionManager.IDLE_TIMEOUT + 300;
+        HttpSession a = new HttpSession("0AS1");
+        a.setCreateTime(old);
+        a.touch(old);
+        a.setMaxAge(TimeUnit.DAYS.toSeconds(1));
+        HttpSession b = new HttpSession("0AS2");
+        b.setCreateTime(old + 1);
+        b.touch(old + 1);
+        ByteBuf records = Unpooled.buffer();
+        addRecord(records, encoder.session(a));
+        addRecord(records, encoder.session(b));
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(frame(records));
+
+        //a is used on the other node, b is not
+        a.touch(System.currentTimeMillis());
+        records = Unpooled.buffer();
+        addRecord(records, encoder.access(a));
+        channel.writeInbound(frame(records));
+        channel.finish();
+
+        Thread.sleep(500);
+        SessionManager.sweep();
+        assertNotNull(SessionManager.peek("0AS1"));
+        assertNull(SessionManager.peek("0AS2"));
+    }
+
+    @Test
+    public void cutFrameWaitsForTheRest() {
+        HttpSession session = session("0AR2");
+        ByteBuf records = Unpooled.buffer();
+        addRecord(records, encoder.session(session));
+        ByteBuf frame = frame(records);
+
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(frame.readRetainedSlice(frame.readableBytes() - 3));
+        assertTrue(channel.isOpen());
+        assertNull(SessionManager.peek("0AR2"));
+        channel.writeInbound(frame);
+        assertNotNull(SessionManager.peek("0AR2"));
+        channel.finish();
+    }
+
+    @Test
+    public void brokenRecordClosesTheConnection() {
+        HttpSession session = session("0AR3");
+        ByteBuf records = Unpooled.buffer();
+        addRecord(records, encoder.session(session));
+        //longer than the rest of the frame
+        records.writeInt(1000);
+        records.writeByte(SessionRecords.REMOVE);
+
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(frame(records));
+        assertFalse(channel.isOpen());
+        //the records before are applied
+        assertNotNull(SessionManager.peek("0AR3"));
+    }
+
+    @Test
+    public void tooLongFrameClosesTheConnection() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(Integer.MAX_VALUE);
+        frame.writeZero(MAC_LENGTH);
+
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(frame);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void shortFrameClosesTheConnection() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(MAC_LENGTH - 1);
+        frame.writeZero(MAC_LENGTH - 1);
+
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(frame);
+        assertFalse(channel.isOpen());
+    }
+}
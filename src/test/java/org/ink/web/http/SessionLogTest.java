@@ -0,0 +1,262 @@
+package org.ink.web.http;
+
+import org.ink.security.user.User;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the sessions read back from the snapshot and the logs,
+ * after a crash in the middle of a record and after the compaction
+ *
+ * @author zhuyichen
+ */
+public class SessionLogTest {
+
+    private static final int SEGMENT = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String path;
+
+    private long now;
+
+    @Before
+    public void setUp() {
+        path = folder.getRoot().toPath().resolve("sess").toString();
+        now = System.currentTimeMillis();
+    }
+
+    private HttpSession session(String id) {
+        HttpSession session = new HttpSession(id);
+        session.setCreateTime(now);
+        session.touch(now);
+        return session;
+    }
+
+    private Map<String, HttpSession> load() throws IOException {
+        Map<String, HttpSession> sessions = new HashMap<>();
+        for (HttpSession session : new SessionLog(path, SEGMENT, 2).load()) {
+            sessions.put(session.sessionId(), session);
+        }
+        return sessions;
+    }
+
+    @Test
+    public void replayTheChanges() throws IOException {
+        SessionLog log = new SessionLog(path, SEGMENT, 2);
+        log.start(Collections.emptyList());
+
+        HttpSession a = session("00A");
+        HttpSession b = session("01B");
+        log.created(a);
+        log.created(b);
+        a.setUser(new User("tom", "secret", Arrays.asList("admin", "user")));
+        log.userChanged(a);
+        log.attributeChanged(a, "name", "tom");
+        log.attributeChanged(a, "count", 3);
+        log.attributeRemoved(a, "count");
+        log.removed(b.sessionId());
+
+        Map<String, HttpSession> sessions = load();
+        assertEquals(1, sessions.size());
+        HttpSession loaded = sessions.get("00A");
+        assertEquals(now, loaded.createTime());
+        assertEquals("tom", loaded.user().getUserName());
+        assertNull(loaded.user().getPassword());
+        assertEquals(Arrays.asList("admin", "user"), loaded.user().getRoles());
+        assertEquals("tom", loaded.getAttribute("name"));
+        assertNull(loaded.getAttribute("count"));
+    }
+
+    @Test
+    public void accessIsLoggedOnceAnInterval() throws IOException {
+        SessionLog log = new SessionLog(path, SEGMENT, 2);
+        log.start(Collections.emptyList());
+        long start = now - now % TimeUnit.MINUTES.toMillis(1);
+        HttpSession a = session("00A");
+        a.setCreateTime(start);
+        a.touch(start);
+        log.created(a);
+
+        //the same minute, not logged
+        a.touch(start + 1000);
+        log.accessed(a, start);
+        assertEquals(start, load().get("00A").lastAccessTime());
+
+        long later = start + TimeUnit.MINUTES.toMillis(2);
+        a.touch(later);
+        log.accessed(a, start + 1000);
+        assertEquals(later, load().get("00A").lastAccessTime());
+    }
+
+    @Test
+    public void truncatedTailIsSkipped() throws IOException {
+        Path logPath = folder.getRoot().toPath().resolve("sess.log.0");
+        SessionRecords.Encoder encoder = new SessionRecords.Encoder();
+        HttpSession a = session("00A");
+        try (MappedLog out = new MappedLog(logPath, SEGMENT)) {
+            out.append(encoder.session(a));
+            out.append(encoder.attribute(a, "name", "tom"));
+            out.append(encoder.attribute(a, "name", "jerry"));
+        }
+        //the process died in the middle of the last record
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        Map<String, HttpSession> sessions = load();
+        assertEquals(1, sessions.size());
+        assertEquals("tom", sessions.get("00A").getAttribute("name"));
+    }
+
+    @Test
+    public void brokenRecordIsSkipped() throws IOException {
+        Path logPath = folder.getRoot().toPath().resolve("sess.log.0");
+        SessionRecords.Encoder encoder = new SessionRecords.Encoder();
+        HttpSession a = session("00A");
+        try (MappedLog out = new MappedLog(logPath, SEGMENT)) {
+            out.append(encoder.session(a));
+            //the string says it is longer than the record
+            ByteBuffer broken = ByteBuffer.allocate(16);
+            broken.put(SessionRecords.ATTRIBUTE).putInt(1000).flip();
+            out.append(broken);
+            out.append(encoder.attribute(a, "name", "tom"));
+        }
+
+        assertEquals("tom", load().get("00A").getAttribute("name"));
+    }
+
+    @Test
+    public void brokenLengthStopsTheLog() throws IOException {
+        Path logPath = folder.getRoot().toPath().resolve("sess.log.0");
+        SessionRecords.Encoder encoder = new SessionRecords.Encoder();
+        HttpSession a = session("00A");
+        try (MappedLog out = new MappedLog(logPath, SEGMENT)) {
+            out.append(encoder.session(a));
+            out.append(encoder.attribute(a, "name", "tom"));
+        }
+        //the length of the record after them is broken, 4 + length overflows
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+            ByteBuffer broken = ByteBuffer.allocate(8);
+            broken.putInt(Integer.MAX_VALUE - 1).putInt(0).flip();
+            channel.write(broken, channel.size());
+        }
+
+        Map<String, HttpSession> sessions = load();
+        assertEquals(1, sessions.size());
+        assertEquals("tom", sessions.get("00A").getAttribute("name"));
+    }
+
+    @Test
+    public void compactKeepsTheLiveSessions() throws IOException {
+        SessionLog log = new SessionLog(path, SEGMENT, 2);
+        log.start(Collections.emptyList());
+
+        List<HttpSession> live = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            HttpSession session = session(String.format("%02X%d", i, i));
+            log.created(session);
+            log.attributeChanged(session, "index", i);
+            session.addAttribute("index", i);
+            if (i % 2 == 0) {
+                log.removed(session.sessionId());
+            } else {
+                live.add(session);
+            }
+        }
+        log.compact(() -> live);
+
+        //changes after the compaction go to the new logs
+        HttpSession first = live.get(0);
+        log.attributeChanged(first, "name", "tom");
+        log.removed(live.get(1).sessionId());
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath())) {
+            for (Path file : files) {
+                assertFalse(file.toString(), file.toString().endsWith(".old"));
+            }
+        }
+        assertTrue(Files.exists(folder.getRoot().toPath().resolve("sess.snapshot")));
+
+        Map<String, HttpSession> sessions = load();
+        assertEquals(live.size() - 1, sessions.size());
+        assertEquals("tom", sessions.get(first.sessionId()).getAttribute("name"));
+        assertFalse(sessions.containsKey(live.get(1).sessionId()));
+        for (HttpSession session : sessions.values()) {
+            int index = Integer.parseInt(session.sessionId().substring(2));
+            assertEquals(1, index % 2);
+            assertEquals(index, (int) session.getAttribute("index"));
+        }
+    }
+
+    @Test
+    public void changesDuringCompactAreKept() throws IOException {
+        SessionLog log = new SessionLog(path, SEGMENT, 2);
+        log.start(Collections.emptyList());
+        HttpSession a = session("00A");
+        HttpSession b = session("01B");
+        log.created(a);
+        log.created(b);
+
+        HttpSession c = session("02C");
+        log.compact(() -> {
+            //the live sessions are read after the logs are moved,
+            //the changes made right then are logged again in the new logs
+            log.created(c);
+            log.removed(b.sessionId());
+            return Arrays.asList(a, b);
+        });
+
+        Map<String, HttpSession> sessions = load();
+        assertEquals(2, sessions.size());
+        assertTrue(sessions.containsKey("00A"));
+        assertTrue(sessions.containsKey("02C"));
+    }
+
+    @Test
+    public void restartWritesTheSnapshot() throws IOException {
+        SessionLog log = new SessionLog(path, SEGMENT, 2);
+        log.start(Collections.emptyList());
+        HttpSession a = session("00A");
+        log.created(a);
+        log.attributeChanged(a, "name", "tom");
+
+        Collection<HttpSession> loaded = new SessionLog(path, SEGMENT, 2).load();
+        //the count of the stripes changed
+        SessionLog restarted = new SessionLog(path, SEGMENT, 4);
+        restarted.start(loaded);
+        HttpSession b = session("01B");
+        restarted.created(b);
+
+        Map<String, HttpSession> sessions = new HashMap<>();
+        for (HttpSession session : new SessionLog(path, SEGMENT, 4).load()) {
+            sessions.put(session.sessionId(), session);
+        }
+        assertEquals(2, sessions.size());
+        assertEquals("tom", sessions.get("00A").getAttribute("name"));
+    }
+}
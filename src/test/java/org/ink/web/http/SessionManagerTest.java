@@ -0,0 +1,183 @@
+package org.ink.web.http;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the sessions idle too long or older than the max age are removed,
+ * the session used last is kept when the shard is full,
+ * and the stores are told out of the lock of the shard
+ *
+ * the shards are set in the app.properties of the tests, 2 shards of 32 sessions
+ *
+ * @author zhuyichen
+ */
+public class SessionManagerTest {
+
+    private static final int SHARD_SIZE = 32;
+
+    /**
+     * keeps the ids removed, and if the shard was locked when it is told,
+     * the stores can not be taken away, so it stops after the tests here
+     */
+    private static final class RecordingStore implements SessionStore {
+
+        final List<String> removed = Collections.synchronizedList(new ArrayList<>());
+
+        volatile boolean locked;
+
+        volatile boolean recording = true;
+
+        @Override
+        public void created(HttpSession session) {
+        }
+
+        @Override
+        public void userChanged(HttpSession session) {
+        }
+
+        @Override
+        public void attributeChanged(HttpSession session, String key, Object value) {
+        }
+
+        @Override
+        public void attributeRemoved(HttpSession session, String key) {
+        }
+
+        @Override
+        public void removed(String sessionId) {
+            if (!recording) {
+                return;
+            }
+            removed.add(sessionId);
+            //the shard of the id is free for another thread
+            Future<Boolean> other = checker.submit(() -> SessionManager.containsSession(sessionId));
+            try {
+                other.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                locked = true;
+                other.cancel(true);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static ExecutorService checker;
+
+    private static RecordingStore store;
+
+    private final List<String> ids = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp() {
+        checker = Executors.newSingleThreadExecutor();
+        store = new RecordingStore();
+        SessionManager.addStore(store);
+        SessionManager.configure();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        store.recording = false;
+        checker.shutdownNow();
+    }
+
+    @Before
+    public void clear() {
+        store.removed.clear();
+        store.locked = false;
+    }
+
+    @After
+    public void removeSessions() {
+        for (String id : ids) {
+            SessionManager.remove(id);
+        }
+        assertFalse(store.locked);
+    }
+
+    private HttpSession put(String id, long createTime, long lastAccessTime) {
+        ids.add(id);
+        return SessionManager.putIfAbsent(id, createTime, lastAccessTime);
+    }
+
+    @Test
+    public void idleSessionIsSwept() {
+        long now = System.currentTimeMillis();
+        long idle = now - SessionManager.IDLE_TIMEOUT - 1;
+        put("00I1", idle, idle);
+        put("00I2", now, now);
+        long expired = SessionManager.expiredSessions();
+
+        assertTrue(SessionManager.sweep() >= 1);
+        assertNull(SessionManager.peek("00I1"));
+        assertNotNull(SessionManager.peek("00I2"));
+        assertTrue(store.removed.contains("00I1"));
+        assertFalse(store.removed.contains("00I2"));
+        assertTrue(SessionManager.expiredSessions() > expired);
+    }
+
+    @Test
+    public void idleSessionIsNotGot() {
+        long idle = System.currentTimeMillis() - SessionManager.IDLE_TIMEOUT - 1;
+        put("00I3", idle, idle);
+
+        assertNull(SessionManager.getSession("00I3"));
+        assertFalse(SessionManager.containsSession("00I3"));
+        assertEquals(Collections.singletonList("00I3"), store.removed);
+    }
+
+    @Test
+    public void sessionOlderThanMaxAge() {
+        long now = System.currentTimeMillis();
+        //used just now, but made 3 seconds ago with 1 second to live
+        HttpSession session = put("00M1", now - 3000, now);
+        session.setMaxAge(1);
+        long expired = SessionManager.expiredSessions();
+
+        assertNull(SessionManager.getSession("00M1"));
+        assertEquals(Collections.singletonList("00M1"), store.removed);
+        assertEquals(expired + 1, SessionManager.expiredSessions());
+    }
+
+    @Test
+    public void leastUsedIsEvicted() {
+        assertEquals(2, SessionManager.shardCount());
+        for (int i = 0; i < SHARD_SIZE; i++) {
+            String id = "01E" + i;
+            ids.add(id);
+            assertNotNull(SessionManager.addSession(id, null));
+        }
+        //the first one is used, the second one is idle for the longest time now
+        assertNotNull(SessionManager.getSession("01E0"));
+        assertTrue(store.removed.isEmpty());
+        long evicted = SessionManager.evictedSessions();
+
+        ids.add("01E" + SHARD_SIZE);
+        SessionManager.addSession("01E" + SHARD_SIZE, null);
+        assertEquals(Collections.singletonList("01E1"), store.removed);
+        assertEquals(evicted + 1, SessionManager.evictedSessions());
+        assertFalse(SessionManager.containsSession("01E1"));
+        assertTrue(SessionManager.containsSession("01E0"));
+        assertTrue(SessionManager.containsSession("01E" + SHARD_SIZE));
+    }
+}
@@ -0,0 +1,196 @@
+package org.ink.web.http;
+
+import com.alibaba.fastjson.JSONObject;
+import org.ink.security.user.User;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * the records written by the encoder are read back the same,
+ * the records cut off or with the lengths too long are refused
+ *
+ * @author zhuyichen
+ */
+public class SessionRecordsTest {
+
+    private final SessionRecords.Encoder encoder = new SessionRecords.Encoder();
+
+    private final SessionRecords.MapTarget target = new SessionRecords.MapTarget(16);
+
+    private final SessionRecords.Decoder decoder = new SessionRecords.Decoder(target);
+
+    private static HttpSession session(String id) {
+        HttpSession session = new HttpSession(id);
+        session.setCreateTime(1000);
+        session.touch(2000);
+        return session;
+    }
+
+    //the encoder uses one buffer again for every record
+    private static ByteBuffer copy(ByteBuffer record) {
+        ByteBuffer copy = ByteBuffer.allocate(record.remaining());
+        copy.put(record).flip();
+        return copy;
+    }
+
+    @Test
+    public void roundTrip() {
+        HttpSession session = session("00A");
+        session.setMaxAge(60);
+        session.setUser(new User("tom", "secret", Arrays.asList("admin", "user")));
+
+        assertEquals(SessionRecords.SESSION, decoder.apply(encoder.session(session)));
+        assertEquals(SessionRecords.USER, decoder.apply(encoder.user(session)));
+        decoder.apply(encoder.attribute(session, "name", "tom"));
+        decoder.apply(encoder.attribute(session, "map", Collections.singletonMap("a", 1)));
+        decoder.apply(encoder.attribute(session, "gone", true));
+        decoder.apply(encoder.removeAttribute(session, "gone"));
+        session.touch(3000);
+        decoder.apply(encoder.access(session));
+
+        HttpSession loaded = target.get("00A");
+        assertEquals(1000, loaded.createTime());
+        assertEquals(3000, loaded.lastAccessTime());
+        assertEquals(60, loaded.maxAge());
+        assertEquals("tom", loaded.user().getUserName());
+        assertNull(loaded.user().getPassword());
+        assertEquals(Arrays.asList("admin", "user"), loaded.user().getRoles());
+        assertEquals("tom", loaded.getAttribute("name"));
+        assertEquals(1, ((JSONObject) loaded.getAttribute("map")).getIntValue("a"));
+        assertNull(loaded.getAttribute("gone"));
+
+        assertEquals(SessionRecords.REMOVE, decoder.apply(encoder.remove("00A")));
+        assertNull(target.get("00A"));
+    }
+
+    @Test
+    public void snapshotRoundTrip() {
+        HttpSession session = session("00A");
+        session.setUser(new User("tom", null, null));
+        session.addAttribute("name", "tom");
+        session.addAttribute("count", 3);
+
+        HttpSession old = target.create("00A", 1000, 1000);
+        old.addAttribute("stale", "x");
+        assertEquals(SessionRecords.SNAPSHOT, decoder.apply(encoder.snapshot(session)));
+
+        HttpSession loaded = target.get("00A");
+        assertEquals(2000, loaded.lastAccessTime());
+        assertEquals("tom", loaded.user().getUserName());
+        assertTrue(loaded.user().getRoles().isEmpty());
+        assertEquals("tom", loaded.getAttribute("name"));
+        assertEquals(3, (int) loaded.getAttribute("count"));
+        //the snapshot is the whole session
+        assertNull(loaded.getAttribute("stale"));
+    }
+
+    @Test
+    public void typeIsNotReadAsClass() {
+        HttpSession session = session("00A");
+        decoder.apply(encoder.session(session));
+        Map<String, Object> value = new HashMap<>();
+        value.put("@type", "java.net.InetAddress");
+        value.put("val", "localhost");
+        decoder.apply(encoder.attribute(session, "evil", value));
+        Object loaded = target.get("00A").getAttribute("evil");
+        assertTrue(loaded instanceof JSONObject);
+        assertEquals("java.net.InetAddress", ((JSONObject) loaded).getString("@type"));
+    }
+
+    @Test
+    public void recordsOfUnknownSessionsAreSkipped() {
+        HttpSession session = session("00A");
+        decoder.apply(encoder.attribute(session, "name", "tom"));
+        decoder.apply(encoder.user(session));
+        assertNull(target.get("00A"));
+    }
+
+    @Test
+    public void truncatedRecords() {
+        HttpSession session = session("00A");
+        session.setUser(new User("tom", null, Arrays.asList("admin")));
+        session.addAttribute("name", "tom");
+        ByteBuffer snapshot = copy(encoder.snapshot(session));
+        for (int length = 1; length < snapshot.limit(); length++) {
+            ByteBuffer cut = snapshot.duplicate();
+            cut.limit(length);
+            try {
+                new SessionRecords.Decoder(new SessionRecords.MapTarget(1)).apply(cut);
+                fail("the record cut at " + length + " is read");
+            } catch (RuntimeException expected) {
+                //BufferUnderflowException or IllegalArgumentException
+            }
+        }
+    }
+
+    @Test
+    public void stringLongerThanRecord() {
+        ByteBuffer record = ByteBuffer.allocate(16);
+        record.put(SessionRecords.REMOVE).putInt(Integer.MAX_VALUE).put((byte) 'A').flip();
+        assertRefused(record);
+    }
+
+    @Test
+    public void noSessionId() {
+        ByteBuffer record = ByteBuffer.allocate(16);
+        record.put(SessionRecords.SNAPSHOT).putInt(-1).flip();
+        assertRefused(record);
+    }
+
+    @Test
+    public void stringLongerThanLimit() {
+        int length = 16 * 1024 * 1024 + 1;
+        ByteBuffer record = ByteBuffer.allocate(5 + length);
+        record.put(SessionRecords.REMOVE).putInt(length);
+        record.position(record.limit());
+        record.flip();
+        assertRefused(record);
+    }
+
+    @Test
+    public void countLongerThanRecord() {
+        HttpSession session = session("00A");
+        decoder.apply(encoder.session(session));
+
+        //the count of the roles
+        session.setUser(new User("tom", null, Collections.singletonList("admin")));
+        ByteBuffer user = copy(encoder.user(session));
+        user.putInt(user.limit() - 4 - 5 - 4, 1 << 30);
+        assertRefused(user);
+
+        //the count of the attributes
+        session.setUser(null);
+        ByteBuffer snapshot = copy(encoder.snapshot(session));
+        snapshot.putInt(snapshot.limit() - 4, -1);
+        assertRefused(snapshot);
+        snapshot.putInt(snapshot.limit() - 4, 1);
+        assertRefused(snapshot);
+    }
+
+    @Test
+    public void controlRecords() {
+        assertEquals(SessionRecords.SYNC, decoder.apply(encoder.control(SessionRecords.SYNC)));
+        assertEquals(SessionRecords.SYNC_DONE, decoder.apply(encoder.control(SessionRecords.SYNC_DONE)));
+        assertFalse(target.sessions.containsKey(""));
+    }
+
+    private void assertRefused(ByteBuffer record) {
+        try {
+            decoder.apply(record.duplicate());
+            fail("the broken record is read");
+        } catch (IllegalArgumentException expected) {
+            //the length or the count is checked before the bytes are allocated
+        }
+    }
+}
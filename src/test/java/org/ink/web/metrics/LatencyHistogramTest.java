@@ -0,0 +1,110 @@
+package org.ink.web.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the buckets at the edges of the powers of 2, the times too long for the buckets,
+ * and the error of the value read back
+ *
+ * @author zhuyichen
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundaries() {
+        //one bucket for every value below 16
+        assertEquals(7, LatencyHistogram.bucket(7));
+        assertEquals(8, LatencyHistogram.bucket(8));
+        assertEquals(15, LatencyHistogram.bucket(15));
+        assertEquals(7, LatencyHistogram.highest(7));
+        assertEquals(8, LatencyHistogram.highest(8));
+        assertEquals(15, LatencyHistogram.highest(15));
+
+        //two values a bucket from 16
+        assertEquals(16, LatencyHistogram.bucket(16));
+        assertEquals(16, LatencyHistogram.bucket(17));
+        assertEquals(17, LatencyHistogram.bucket(18));
+        assertEquals(17, LatencyHistogram.highest(16));
+    }
+
+    @Test
+    public void bucketsKeepTheOrder() {
+        int last = 0;
+        for (long value = 0; value < 1L << 20; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket == last || bucket == last + 1);
+            last = bucket;
+        }
+    }
+
+    @Test
+    public void relativeError() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            //evenly over the exponents up to 2^40
+            long value = random.nextLong() >>> (23 + random.nextInt(41));
+            long read = LatencyHistogram.highest(LatencyHistogram.bucket(value));
+            assertTrue(value + " read as " + read, read >= value);
+            assertTrue(value + " read as " + read, read - value <= value / 8);
+        }
+    }
+
+    @Test
+    public void tooLongTimes() {
+        int last = LatencyHistogram.bucket(Long.MAX_VALUE);
+        assertEquals(last, LatencyHistogram.bucket(1L << 41));
+        assertEquals(last, LatencyHistogram.bucket(1L << 50));
+        //the values of 2^40 still have their own buckets
+        assertTrue(LatencyHistogram.bucket(1L << 40) < last);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1L << 50);
+        histogram.record(Long.MAX_VALUE / 2);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.total());
+        //read as the highest value of the last bucket
+        assertEquals((1L << 41) - 1, snapshot.percentile(0.5));
+        assertEquals((1L << 41) - 1, snapshot.percentile(1));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.total());
+        assertEquals(0, snapshot.percentile(0.5));
+        assertEquals(0, snapshot.percentile(0.999));
+    }
+
+    @Test
+    public void oneValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        long read = LatencyHistogram.highest(LatencyHistogram.bucket(1000));
+        assertEquals(read, snapshot.percentile(0));
+        assertEquals(read, snapshot.percentile(0.5));
+        assertEquals(read, snapshot.percentile(0.999));
+        assertEquals(read, snapshot.percentile(1));
+        assertEquals(1, histogram.count());
+        assertEquals(1000, histogram.sum());
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(101, snapshot.total());
+        assertEquals(LatencyHistogram.highest(LatencyHistogram.bucket(50)), snapshot.percentile(0.5));
+        assertEquals(LatencyHistogram.highest(LatencyHistogram.bucket(99)), snapshot.percentile(0.99));
+        assertEquals(LatencyHistogram.highest(LatencyHistogram.bucket(100)), snapshot.percentile(1));
+    }
+}
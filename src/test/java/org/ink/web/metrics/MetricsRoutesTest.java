@@ -0,0 +1,68 @@
+package org.ink.web.metrics;
+
+import io.netty.handler.codec.http.HttpMethod;
+import org.ink.web.route.Route;
+import org.ink.web.route.RouteFinder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the text scraped by Prometheus, the quotes and the backslashes of the paths are escaped
+ *
+ * @author zhuyichen
+ */
+public class MetricsRoutesTest {
+
+    //name, the labels, and the value
+    private static final Pattern SAMPLE = Pattern.compile(
+            "[a-z_]+(\\{([a-z]+=\"([^\"\\\\\\n]|\\\\[\"\\\\n])*\",?)+\\})? -?[0-9.E-]+");
+
+    public static class Controller {
+
+        public void quoted() {
+        }
+    }
+
+    @BeforeClass
+    public static void addRoute() throws Exception {
+        Route route = new Route(new Controller(), Controller.class.getMethod("quoted"),
+                HttpMethod.GET, "/mr/a\"b\\c");
+        RouteFinder.addRouter(route);
+        long start = route.metrics().start();
+        route.metrics().end(start, true);
+    }
+
+    @Test
+    public void everyLineIsReadable() {
+        List<String> lines = Arrays.asList(MetricsRoutes.scrape().split("\n"));
+        for (String line : lines) {
+            if (line.startsWith("# HELP ") || line.startsWith("# TYPE ")) {
+                continue;
+            }
+            assertTrue(line, SAMPLE.matcher(line).matches());
+        }
+    }
+
+    @Test
+    public void pathIsEscaped() {
+        List<String> lines = Arrays.asList(MetricsRoutes.scrape().split("\n"));
+        String labels = "{method=\"GET\",path=\"/mr/a\\\"b\\\\c\"";
+        assertTrue(lines.contains("ink_requests_total" + labels + "} 1"));
+        assertTrue(lines.contains("ink_request_errors_total" + labels + "} 1"));
+        assertTrue(lines.contains("ink_requests_in_flight" + labels + "} 0"));
+        assertTrue(lines.contains("ink_request_duration_seconds_count" + labels + "} 1"));
+        for (String quantile : new String[]{"0.5", "0.99", "0.999"}) {
+            String prefix = "ink_request_duration_seconds" + labels + ",quantile=\"" + quantile + "\"} ";
+            assertTrue(prefix, lines.stream().anyMatch(line -> line.startsWith(prefix)));
+        }
+        assertTrue(lines.contains("# TYPE ink_request_duration_seconds summary"));
+        assertTrue(lines.contains("# HELP ink_rejected_total the requests answered without running a route"));
+        assertTrue(lines.contains("# TYPE ink_sessions_live gauge"));
+    }
+}
@@ -0,0 +1,137 @@
+package org.ink.web.route;
+
+import io.netty.handler.codec.http.HttpMethod;
+import org.ink.web.annotation.PathVariable;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * the precedence of the routes in the trie,
+ * the static segment first, then Integer, Long and String
+ *
+ * @author zhuyichen
+ */
+public class RouteFinderTest {
+
+    public static class Controller {
+
+        public void me() {
+        }
+
+        public void byInt(@PathVariable Integer id) {
+        }
+
+        public void byLong(@PathVariable Long id) {
+        }
+
+        public void byName(@PathVariable String id) {
+        }
+
+        public void orders(@PathVariable Integer id) {
+        }
+
+        public void order(@PathVariable Integer id, @PathVariable String name) {
+        }
+
+        public void root() {
+        }
+
+        public void post() {
+        }
+    }
+
+    private static Route me;
+    private static Route byInt;
+    private static Route byLong;
+    private static Route byName;
+    private static Route orders;
+    private static Route order;
+    private static Route root;
+    private static Route post;
+
+    @BeforeClass
+    public static void addRoutes() throws Exception {
+        //the order they are added does not change the precedence
+        byName = add("byName", HttpMethod.GET, "/rt/user/{id}");
+        byLong = add("byLong", HttpMethod.GET, "/rt/user/{id}");
+        byInt = add("byInt", HttpMethod.GET, "/rt/user/{id}");
+        me = add("me", HttpMethod.GET, "/rt/user/me");
+        orders = add("orders", HttpMethod.GET, "/rt/user/{id}/orders/");
+        order = add("order", HttpMethod.GET, "/rt/user/{id}/orders/{name}");
+        root = add("root", HttpMethod.GET, "/rt");
+        post = add("post", HttpMethod.POST, "/rt/user/me");
+    }
+
+    private static Route add(String name, HttpMethod httpMethod, String path) throws Exception {
+        Method method = null;
+        for (Method m : Controller.class.getMethods()) {
+            if (m.getName().equals(name)) {
+                method = m;
+            }
+        }
+        Route route = new Route(new Controller(), method, httpMethod, path);
+        RouteFinder.addRouter(route);
+        return route;
+    }
+
+    private static Route get(String path) {
+        return RouteFinder.findRoute(HttpMethod.GET, path);
+    }
+
+    @Test
+    public void staticWinsParam() {
+        assertEquals(me, get("/rt/user/me"));
+        assertEquals(post, RouteFinder.findRoute(HttpMethod.POST, "/rt/user/me"));
+    }
+
+    @Test
+    public void typedParams() {
+        assertEquals(byInt, get("/rt/user/42"));
+        assertEquals(byInt, get("/rt/user/2147483647"));
+        assertEquals(byInt, get("/rt/user/0002147483647"));
+        assertEquals(byLong, get("/rt/user/2147483648"));
+        assertEquals(byLong, get("/rt/user/9223372036854775807"));
+        assertEquals(byName, get("/rt/user/9223372036854775808"));
+        assertEquals(byName, get("/rt/user/-1"));
+        assertEquals(byName, get("/rt/user/tom"));
+    }
+
+    @Test
+    public void deeperPaths() {
+        assertEquals(orders, get("/rt/user/7/orders"));
+        assertEquals(order, get("/rt/user/7/orders/first"));
+        //{id} of orders is Integer, a name does not match it
+        assertNull(get("/rt/user/tom/orders"));
+        assertNull(get("/rt/user/7/orders/first/more"));
+    }
+
+    @Test
+    public void slashAndQuery() {
+        assertEquals(me, get("/rt/user/me/"));
+        assertEquals(me, get("/rt/user/me?name=tom&id=1"));
+        assertEquals(me, get("/rt/user/me/?x=/y"));
+        assertEquals(byInt, get("/rt/user/42?id=tom"));
+        assertEquals(root, get("/rt"));
+        assertEquals(root, get("/rt/"));
+    }
+
+    @Test
+    public void notFound() {
+        assertNull(get("/rt/user"));
+        assertNull(get("/rt/user//orders"));
+        assertNull(get("/rt/users/me"));
+        assertNull(RouteFinder.findRoute(HttpMethod.PUT, "/rt/user/me"));
+    }
+
+    @Test
+    public void conflictKeepsTheFirst() throws Exception {
+        add("byName", HttpMethod.GET, "/rt/user/me");
+        assertSame(me, get("/rt/user/me"));
+    }
+}